@@ -0,0 +1,319 @@
+/*
+ * ArrayQueue.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * A generic class that implements our Queue interface using a circular
+ * array. The items are stored from index front onward, wrapping around
+ * to index 0, so neither insert nor remove ever shifts an item.
+ *
+ * An unbounded queue doubles its array whenever it fills up, so it is
+ * never full. A bounded queue holds at most maxSize items; it also
+ * starts small and doubles, but never past maxSize, and insert returns
+ * false once it is full.
+ */
+public class ArrayQueue<T> implements Queue<T> {
+    // the initial length of the array
+    private static final int DEFAULT_CAPACITY = 4;
+
+    // the fields of the ArrayQueue object
+    private T[] items;      // the items, in a circular array
+    private int front;      // the index of the item at the front
+    private int numItems;   // the number of items in the queue
+    private int maxSize;    // the most items allowed, or -1 if unbounded
+
+    /*
+     * Constructs an ArrayQueue object for an unbounded queue that is
+     * initially empty.
+     */
+    public ArrayQueue() {
+        this(DEFAULT_CAPACITY, -1);
+    }
+
+    /*
+     * Constructs an ArrayQueue object for a bounded queue that is
+     * initially empty and can hold at most maxSize items.
+     */
+    public ArrayQueue(int maxSize) {
+        this(Math.min(maxSize, DEFAULT_CAPACITY), maxSize);
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArrayQueue(int capacity, int maxSize) {
+        items = (T[]) new Object[Math.max(capacity, 1)];
+        front = 0;
+        numItems = 0;
+        this.maxSize = maxSize;
+    }
+
+    /*
+     * isEmpty - returns true if the queue is empty, and false otherwise
+     */
+    public boolean isEmpty() {
+        return (numItems == 0);
+    }
+
+    /*
+     * isFull - returns true if the queue is bounded and holds maxSize
+     * items. An unbounded queue is never full.
+     */
+    public boolean isFull() {
+        return (numItems == maxSize);
+    }
+
+    /*
+     * size - returns the number of items in the queue
+     */
+    public int size() {
+        return numItems;
+    }
+
+    /*
+     * insert - adds the specified item at the rear of the queue.
+     * Returns false if the queue is full, and true otherwise.
+     */
+    public boolean insert(T item) {
+        if (isFull()) {
+            return false;
+        }
+        if (numItems == items.length) {
+            grow();
+        }
+
+        int rear = front + numItems;
+        if (rear >= items.length) {
+            rear -= items.length;
+        }
+        items[rear] = item;
+        numItems++;
+        return true;
+    }
+
+    /*
+     * grow - moves the items into an array twice as long (but no longer
+     * than maxSize, for a bounded queue), with the front item at index 0.
+     */
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        int length = 2 * items.length;
+        if (maxSize != -1 && length > maxSize) {
+            length = maxSize;
+        }
+        T[] newItems = (T[]) new Object[length];
+        int firstPart = Math.min(numItems, items.length - front);
+        System.arraycopy(items, front, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, numItems - firstPart);
+        items = newItems;
+        front = 0;
+    }
+
+    /*
+     * remove - removes the item at the front of the queue and returns a
+     * reference to the removed object. Returns null if the queue is
+     * empty. The slot is cleared, so that the queue doesn't keep the
+     * item from being garbage collected.
+     */
+    public T remove() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        T removed = items[front];
+        items[front] = null;
+        front++;
+        if (front == items.length) {
+            front = 0;
+        }
+        numItems--;
+        return removed;
+    }
+
+    /*
+     * peek - returns a reference to the item at the front of the queue
+     * without removing it. Returns null if the queue is empty.
+     */
+    public T peek() {
+        if (isEmpty()) {
+            return null;
+        }
+        return items[front];
+    }
+
+    /*
+     * iterator - returns an iterator over the items in the queue, from
+     * front to rear. The queue must not be changed while the iterator
+     * is in use.
+     */
+    public Iterator<T> iterator() {
+        return new ArrayQueueIterator();
+    }
+
+    /*
+     * private inner class for an iterator over an ArrayQueue
+     */
+    private class ArrayQueueIterator implements Iterator<T> {
+        private int nextIndex;     // the index of the next item to visit
+        private int remaining;     // the number of items not yet visited
+
+        private ArrayQueueIterator() {
+            nextIndex = front;
+            remaining = numItems;
+        }
+
+        /*
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (remaining > 0);
+        }
+
+        /*
+         * next - returns a reference to the next item in the iteration
+         */
+        public T next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            T item = items[nextIndex];
+            nextIndex++;
+            if (nextIndex == items.length) {
+                nextIndex = 0;
+            }
+            remaining--;
+            return item;
+        }
+    }
+
+    /*
+     * toString - converts the queue into a String of the form
+     * {front, one-after-front, two-after-front, ...}
+     */
+    public String toString() {
+        String str = "{";
+
+        int i = front;
+        for (int n = 0; n < numItems; n++) {
+            str = str + items[i];
+            if (n < numItems - 1) {
+                str = str + ", ";
+            }
+            i++;
+            if (i == items.length) {
+                i = 0;
+            }
+        }
+
+        str = str + "}";
+        return str;
+    }
+
+    /* returns the time in ms of count rounds of filling q with n items and draining it */
+    private static long fillAndDrain(Queue<Integer> q, int n, int count) {
+        Integer item = 112;
+        long start = System.nanoTime();
+        for (int round = 0; round < count; round++) {
+            for (int i = 0; i < n; i++) {
+                q.insert(item);
+            }
+            while (q.remove() != null) {
+            }
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /* returns the time in ms of n steps of a pipeline that keeps depth items in q */
+    private static long pipeline(Queue<Integer> q, int depth, int n) {
+        Integer item = 112;
+        for (int i = 0; i < depth; i++) {
+            q.insert(item);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            q.insert(item);
+            q.remove();
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /*
+     * Self-tests, then a comparison with LLQueue: times filling a queue with a million items
+     * and draining it, and a producer/consumer pipeline that keeps a
+     * thousand items in the queue. An optional argument gives the number
+     * of rounds of filling and draining.
+     */
+    public static void main(String[] args) {
+        System.out.println("(1.1) Testing on an unbounded queue");
+        try {
+            // the rear wraps around to index 0 before the array grows,
+            // and the items must keep their order through both
+            ArrayQueue<Integer> q = new ArrayQueue<Integer>();
+            for (int i = 0; i < 3; i++) {
+                q.insert(i);
+            }
+            String results = q.remove() + " " + q.remove() + " ";
+            for (int i = 3; i < 10; i++) {
+                q.insert(i);
+            }
+            for (int item : q) {
+                results += item;
+            }
+            results += " " + q + " " + q.size() + " " + q.peek() + " " + q.isFull();
+            String expected = "0 1 23456789 {2, 3, 4, 5, 6, 7, 8, 9} 8 2 false";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.2) Testing on a bounded queue");
+        try {
+            ArrayQueue<Integer> q = new ArrayQueue<Integer>(5);
+            String results = "";
+            for (int i = 0; i < 6; i++) {
+                results += q.insert(i) + " ";
+            }
+            results += q.isFull() + " " + q.remove() + " " + q.insert(5) + " " + q + " ";
+            try {
+                new ArrayQueue<Integer>(0);
+            } catch (IllegalArgumentException e) {
+                results += "IAE";
+            }
+            String expected = "true true true true true false true 0 true {1, 2, 3, 4, 5} IAE";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+        System.out.println("queue        fill+drain (ms)   pipeline (ms)");
+        for (int warm = 0; warm < 2; warm++) {     // the first pass warms up
+            long llFill = fillAndDrain(new LLQueue<Integer>(), 1000000, rounds);
+            long arrFill = fillAndDrain(new ArrayQueue<Integer>(), 1000000, rounds);
+            long llPipe = pipeline(new LLQueue<Integer>(), 1000, 50000000);
+            long arrPipe = pipeline(new ArrayQueue<Integer>(), 1000, 50000000);
+            if (warm == 1) {
+                System.out.printf("LLQueue     %15d %15d%n", llFill, llPipe);
+                System.out.printf("ArrayQueue  %15d %15d%n", arrFill, arrPipe);
+            }
+        }
+    }
+}
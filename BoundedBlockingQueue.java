@@ -0,0 +1,512 @@
+/*
+ * BoundedBlockingQueue.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * A generic class that implements our Queue interface with a bounded
+ * queue that threads can share, and that can make them wait: put waits
+ * while the queue is full and take waits while it is empty, which gives
+ * a producer back-pressure and lets an idle consumer sleep instead of
+ * spinning. The timed forms of insert and remove wait only up to a given
+ * time. The plain Queue methods never wait: insert returns false when
+ * the queue is full and remove returns null when it is empty.
+ *
+ * The items are kept in a bounded ArrayQueue guarded by one
+ * ReentrantLock, with a Condition for each reason to wait. insertAll
+ * and drainTo move a whole batch of items while holding the lock once.
+ * Waiting threads park through the Conditions rather than through
+ * synchronized and wait(), so a virtual thread that waits doesn't pin
+ * the carrier thread that runs it.
+ *
+ * null items are not allowed, because remove returns null to report
+ * that the queue is empty.
+ */
+public class BoundedBlockingQueue<T> implements Queue<T> {
+    private final ArrayQueue<T> items;
+    private final int capacity;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;    // signaled when an item is added
+    private final Condition notFull;     // signaled when an item is removed
+
+    /*
+     * Constructs a BoundedBlockingQueue object for a queue that is
+     * initially empty and can hold at most capacity items.
+     */
+    public BoundedBlockingQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        items = new ArrayQueue<T>(capacity);
+        this.capacity = capacity;
+        lock = new ReentrantLock();
+        notEmpty = lock.newCondition();
+        notFull = lock.newCondition();
+    }
+
+    /* throws an IllegalArgumentException if the specified item is null */
+    private static void checkItem(Object item) {
+        if (item == null) {
+            throw new IllegalArgumentException("item must be non-null");
+        }
+    }
+
+    /*
+     * insert - adds the specified item at the rear of the queue if there
+     * is room. Returns false if the queue is full, and true otherwise.
+     */
+    public boolean insert(T item) {
+        checkItem(item);
+        lock.lock();
+        try {
+            if (!items.insert(item)) {
+                return false;
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * insert - adds the specified item at the rear of the queue, waiting
+     * up to the specified time for room. Returns false if the time ran
+     * out before there was room, and true otherwise.
+     */
+    public boolean insert(T item, long timeout, TimeUnit unit)
+        throws InterruptedException
+    {
+        checkItem(item);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (items.isFull()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            items.insert(item);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * put - adds the specified item at the rear of the queue, waiting
+     * for as long as it takes for there to be room.
+     */
+    public void put(T item) throws InterruptedException {
+        checkItem(item);
+        lock.lockInterruptibly();
+        try {
+            while (items.isFull()) {
+                notFull.await();
+            }
+            items.insert(item);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * remove - removes the item at the front of the queue and returns a
+     * reference to the removed object. Returns null if the queue is
+     * empty.
+     */
+    public T remove() {
+        lock.lock();
+        try {
+            T item = items.remove();
+            if (item != null) {
+                notFull.signal();
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * remove - removes and returns the item at the front of the queue,
+     * waiting up to the specified time for there to be one. Returns null
+     * if the time ran out while the queue was empty.
+     */
+    public T remove(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (items.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            T item = items.remove();
+            notFull.signal();
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * take - removes and returns the item at the front of the queue,
+     * waiting for as long as it takes for there to be one.
+     */
+    public T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (items.isEmpty()) {
+                notEmpty.await();
+            }
+            T item = items.remove();
+            notFull.signal();
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * insertAll - adds the specified items at the rear of the queue, in
+     * order, until the queue is full, taking the lock only once, instead
+     * of once per item as Queue's insertAll would. Never waits. Returns
+     * the number of items added, which is less than the number given
+     * only if the queue filled up. The items are copied before the lock
+     * is taken, so newItems is iterated only once.
+     */
+    public int insertAll(Iterable<? extends T> newItems) {
+        ArrayList<T> batch = new ArrayList<T>();
+        for (T item : newItems) {
+            checkItem(item);
+            batch.add(item);
+        }
+        lock.lock();
+        try {
+            int count = 0;
+            for (T item : batch) {
+                if (!items.insert(item)) {
+                    break;
+                }
+                count++;
+            }
+            if (count > 0) {
+                notEmpty.signalAll();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * drainTo - removes up to max items from the front of the queue and
+     * adds them, in order, to the specified collection, taking the lock
+     * only once. Never waits. Returns the number of items moved.
+     */
+    public int drainTo(Collection<? super T> c, int max) {
+        if (c == null) {
+            throw new IllegalArgumentException("collection must be non-null");
+        }
+        lock.lock();
+        try {
+            int count = 0;
+            while (count < max && !items.isEmpty()) {
+                c.add(items.remove());
+                count++;
+            }
+            if (count > 0) {
+                notFull.signalAll();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * peek - returns a reference to the item at the front of the queue
+     * without removing it. Returns null if the queue is empty.
+     */
+    public T peek() {
+        lock.lock();
+        try {
+            return items.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * isEmpty - returns true if the queue is empty, and false otherwise.
+     * Other threads may change the queue right after it returns.
+     */
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return items.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * isFull - returns true if the queue holds capacity items, and false
+     * otherwise. Other threads may change the queue right after it
+     * returns.
+     */
+    public boolean isFull() {
+        lock.lock();
+        try {
+            return items.isFull();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * size - returns the number of items in the queue. Other threads may
+     * change the queue right after it returns.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return items.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * iterator - returns an iterator over a snapshot of the items in the
+     * queue, from front to rear, taken while holding the lock. Other
+     * threads can keep using the queue while the iterator is in use.
+     */
+    public Iterator<T> iterator() {
+        lock.lock();
+        try {
+            ArrayQueue<T> snapshot = new ArrayQueue<T>();
+            snapshot.insertAll(items);
+            return snapshot.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* getCapacity - returns the most items that the queue can hold */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /*
+     * toString - converts the queue into a String of the form
+     * {front, one-after-front, two-after-front, ...}
+     */
+    public String toString() {
+        lock.lock();
+        try {
+            return items.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * produce - inserts the specified number of bursts of items into the
+     * queue, pausing for a millisecond after each burst, and then a
+     * final item of -1. Uses put if the queue is a BoundedBlockingQueue.
+     */
+    private static void produce(Queue<Integer> queue, int bursts, int burstSize)
+        throws InterruptedException
+    {
+        Integer item = 112;
+        for (int b = 0; b < bursts; b++) {
+            for (int i = 0; i < burstSize; i++) {
+                if (queue instanceof BoundedBlockingQueue) {
+                    ((BoundedBlockingQueue<Integer>) queue).put(item);
+                } else {
+                    queue.insert(item);
+                }
+            }
+            Thread.sleep(1);
+        }
+        if (queue instanceof BoundedBlockingQueue) {
+            ((BoundedBlockingQueue<Integer>) queue).put(-1);
+        } else {
+            queue.insert(-1);
+        }
+    }
+
+    /*
+     * Self-tests, then an idle-consumer test: a producer inserts bursts of items with pauses
+     * between them, and a consumer removes them, either by polling a
+     * locked LLQueue in a loop or by draining a BoundedBlockingQueue in
+     * batches and waiting with take when it is empty. Reports the CPU
+     * time that each consumer used. An optional argument gives the
+     * number of bursts.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("(1.1) Testing concurrent producers and consumers");
+        try {
+            // a small capacity keeps the queue full much of the time
+            int errors = ConcurrentHarness.checkQueue(new BoundedBlockingQueue<Integer>(16), 
+                                                      4, 50000);
+            System.out.println("wrong results: " + errors);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(errors == 0);
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.2) Testing on waiting");
+        try {
+            final BoundedBlockingQueue<Integer> q = new BoundedBlockingQueue<Integer>(2);
+            q.put(1);
+            q.put(2);
+            String results = q.insert(3) + " " + q.insert(3, 10, TimeUnit.MILLISECONDS) + " ";
+            
+            // put waits until another thread takes an item
+            Thread taker = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                        q.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            taker.start();
+            q.put(3);
+            taker.join();
+            results += q + " ";
+            results += q.take() + " " + q.take() + " " + q.remove(10, TimeUnit.MILLISECONDS) + " ";
+            
+            // and take waits until another thread puts one
+            Thread putter = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                        q.put(4);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            putter.start();
+            results += q.take();
+            putter.join();
+            String expected = "false false {2, 3} 2 3 null 4";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.3) Testing on insertAll and drainTo");
+        try {
+            BoundedBlockingQueue<Integer> q = new BoundedBlockingQueue<Integer>(3);
+            ArrayList<Integer> list = new ArrayList<Integer>();
+            list.add(1);
+            list.add(2);
+            list.add(3);
+            list.add(4);
+            String results = q.insertAll(list) + " " + q + " ";
+            list.clear();
+            results += q.drainTo(list, 2) + " " + list + " " + q + " ";
+            list.add(null);
+            try {
+                q.insertAll(list);
+            } catch (IllegalArgumentException e) {
+                results += "IAE ";
+            }
+            results += q;
+            String expected = "3 {1, 2, 3} 2 [1, 2] {3} IAE {3}";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        final int bursts = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        final int burstSize = 1000;
+        final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        final long[] cpuNanos = new long[2];
+
+        final Queue<Integer> polled = new ConcurrentHarness.LockedQueue<Integer>();
+        Thread spinner = new Thread(new Runnable() {
+            public void run() {
+                long start = mx.getCurrentThreadCpuTime();
+                while (true) {
+                    Integer item = polled.remove();
+                    if (item != null && item == -1) {
+                        break;
+                    }
+                }
+                cpuNanos[0] = mx.getCurrentThreadCpuTime() - start;
+            }
+        });
+        long wall = System.nanoTime();
+        spinner.start();
+        produce(polled, bursts, burstSize);
+        spinner.join();
+        long spinWall = System.nanoTime() - wall;
+
+        final BoundedBlockingQueue<Integer> blocking = new BoundedBlockingQueue<Integer>(256);
+        Thread drainer = new Thread(new Runnable() {
+            public void run() {
+                long start = mx.getCurrentThreadCpuTime();
+                ArrayList<Integer> batch = new ArrayList<Integer>();
+                try {
+                    boolean done = false;
+                    while (!done) {
+                        batch.add(blocking.take());
+                        blocking.drainTo(batch, 255);
+                        done = batch.get(batch.size() - 1) == -1;
+                        batch.clear();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                cpuNanos[1] = mx.getCurrentThreadCpuTime() - start;
+            }
+        });
+        wall = System.nanoTime();
+        drainer.start();
+        produce(blocking, bursts, burstSize);
+        drainer.join();
+        long blockWall = System.nanoTime() - wall;
+
+        System.out.println("consumer                      wall (ms)   consumer CPU (ms)");
+        System.out.printf("polling a locked LLQueue   %12d %19d%n",
+                          spinWall / 1000000, cpuNanos[0] / 1000000);
+        System.out.printf("BoundedBlockingQueue       %12d %19d%n",
+                          blockWall / 1000000, cpuNanos[1] / 1000000);
+    }
+}
@@ -10,6 +10,8 @@
  */
 
 import java.util.*;     // to allow for the use of Arrays.toString() in testing
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
 
 /*
  * A class that implements a hash table using separate chaining.
@@ -17,41 +19,550 @@ import java.util.*;     // to allow for the use of Arrays.toString() in testing
 public class ChainedHashTable implements HashTable {
     /* 
      * Private inner class for a node in a linked list
-     * for a given position of the hash table
+     * for a given position of the hash table.
+     * A node is also the (key, values) entry that the entry iterators
+     * hand out, so iterating over entries allocates nothing per entry.
+     *
+     * Most keys have a single value, which the node holds in value; 
+     * values stays null until a second value arrives (or a value is 
+     * removed through a ValueView), and then holds all of them.
      */
-    private class Node {
+    private class Node implements Map.Entry<Object, Queue<Object>> {
         private Object key;
-        private LLQueue<Object> values;
+        private int hash;       // the key's hash; see hash()
+        private Object value;
+        private ArrayQueue<Object> values;
         private Node next;
         
-        private Node(Object key, Object value) {
+        private Node(Object key, int hash, Object value) {
             this.key = key;
-            values = new LLQueue<Object>();
-            values.insert(value);
+            this.hash = hash;
+            this.value = value;
+            values = null;
             next = null;
         }
+        
+        /* moves the single value into a queue of values, if it isn't in one */
+        private void promote() {
+            if (values == null) {
+                values = new ArrayQueue<Object>();
+                values.insert(value);
+                value = null;
+            }
+        }
+        
+        /* adds a value to the values of this node's key */
+        private void addValue(Object item) {
+            promote();
+            values.insert(item);
+        }
+        
+        public Object getKey() {
+            return key;
+        }
+        
+        /* getValue - returns a view of the values of this node's key */
+        public Queue<Object> getValue() {
+            return new ValueView(this);
+        }
+        
+        public Queue<Object> setValue(Queue<Object> values) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public boolean equals(Object other) {
+            if (!(other instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) other;
+            return key.equals(e.getKey()) && getValue().equals(e.getValue());
+        }
+        
+        public int hashCode() {
+            return key.hashCode() ^ getValue().hashCode();
+        }
+        
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+    
+    /*
+     * Private inner class for the Queue of values that search and remove
+     * return: a view of the values held by a node, so that a key with one
+     * value needs no queue of its own. Changes made through the view are 
+     * changes to the node, and two views of the same node are equal.
+     */
+    private class ValueView implements Queue<Object> {
+        private Node node;
+        
+        private ValueView(Node node) {
+            this.node = node;
+        }
+        
+        public boolean insert(Object item) {
+            node.addValue(item);
+            return true;
+        }
+        
+        public Object remove() {
+            node.promote();
+            return node.values.remove();
+        }
+        
+        public Object peek() {
+            return (node.values == null) ? node.value : node.values.peek();
+        }
+        
+        public boolean isEmpty() {
+            return node.values != null && node.values.isEmpty();
+        }
+        
+        public boolean isFull() {
+            return false;
+        }
+        
+        public int size() {
+            return (node.values == null) ? 1 : node.values.size();
+        }
+        
+        public Iterator<Object> iterator() {
+            if (node.values == null) {
+                return Collections.singleton(node.value).iterator();
+            }
+            return node.values.iterator();
+        }
+        
+        public boolean equals(Object other) {
+            return other instanceof ValueView && ((ValueView) other).node == node;
+        }
+        
+        public int hashCode() {
+            return System.identityHashCode(node);
+        }
+        
+        public String toString() {
+            return (node.values == null) ? "{" + node.value + "}" : node.values.toString();
+        }
+    }
+    
+    /*
+     * Private inner class for a node in the search tree of a treeified
+     * bucket. Each TreeNode refers to one Node of the bucket's chain, and
+     * prev/next link the TreeNodes in the same order as the chain, so
+     * that a Node can be unlinked from the chain without walking it.
+     */
+    private class TreeNode {
+        private Node node;
+        private int hash;          // node.hash
+        private int seq;           // breaks ties between otherwise equal keys
+        private int height;
+        private TreeNode left;
+        private TreeNode right;
+        private TreeNode prev;
+        private TreeNode next;
+        
+        private TreeNode(Node node, int seq) {
+            this.node = node;
+            this.hash = node.hash;
+            this.seq = seq;
+            height = 1;
+        }
+    }
+    
+    /*
+     * Private inner class for a bucket whose chain has grown past the
+     * treeify threshold. The nodes stay linked in the bucket's chain,
+     * and an AVL tree over them orders the keys by hash code, then by
+     * class name, then by compareTo when the keys are Comparable, and 
+     * finally by the order in which they were added. Lookups therefore
+     * take O(log n) time even when every key in the bucket has the same
+     * hash code, as long as the keys are Comparable.
+     */
+    private class TreeBin {
+        private TreeNode root;
+        private TreeNode first;    // the TreeNode for the head of the chain
+        private int size;
+        private int nextSeq;
+        
+        /* builds a tree over the chain that starts with the specified node */
+        private TreeBin(Node head) {
+            TreeNode last = null;
+            for (Node trav = head; trav != null; trav = trav.next) {
+                TreeNode t = new TreeNode(trav, nextSeq++);
+                if (last == null) {
+                    first = t;
+                } else {
+                    last.next = t;
+                    t.prev = last;
+                }
+                last = t;
+                root = insert(root, t);
+                size++;
+            }
+        }
+        
+        /*
+         * find - returns the TreeNode for the specified key, or null if
+         * the key is not in this bin.
+         */
+        private TreeNode find(Object key, int hash) {
+            return find(root, key, hash);
+        }
+        
+        private TreeNode find(TreeNode t, Object key, int hash) {
+            while (t != null) {
+                int c = Integer.compare(hash, t.hash);
+                if (c == 0) {
+                    if (counting) {
+                        equalsCalls++;
+                    }
+                    if (key.equals(t.node.key)) {
+                        return t;
+                    }
+                    c = compareKeys(key, t.node.key);
+                    if (c == 0) {
+                        // the order doesn't tell us where to go; try both sides
+                        TreeNode found = find(t.left, key, hash);
+                        if (found != null) {
+                            return found;
+                        }
+                        c = 1;
+                    }
+                }
+                t = (c < 0) ? t.left : t.right;
+            }
+            return null;
+        }
+        
+        /*
+         * addFirst - adds the specified node, which the caller has just 
+         * made the head of the bucket's chain.
+         */
+        private void addFirst(Node n) {
+            TreeNode t = new TreeNode(n, nextSeq++);
+            t.next = first;
+            if (first != null) {
+                first.prev = t;
+            }
+            first = t;
+            root = insert(root, t);
+            size++;
+        }
+        
+        /*
+         * remove - removes the specified TreeNode from the tree and its
+         * Node from the chain in the specified bucket.
+         */
+        private void remove(TreeNode t, Node[] tab, int index) {
+            if (t.prev == null) {
+                tab[index] = t.node.next;
+                first = t.next;
+            } else {
+                t.prev.node.next = t.node.next;
+                t.prev.next = t.next;
+            }
+            if (t.next != null) {
+                t.next.prev = t.prev;
+            }
+            root = delete(root, t);
+            size--;
+        }
+        
+        private int compare(TreeNode a, TreeNode b) {
+            int c = Integer.compare(a.hash, b.hash);
+            if (c == 0) {
+                c = compareKeys(a.node.key, b.node.key);
+            }
+            if (c == 0) {
+                c = Integer.compare(a.seq, b.seq);
+            }
+            return c;
+        }
+        
+        private TreeNode insert(TreeNode t, TreeNode x) {
+            if (t == null) {
+                return x;
+            }
+            if (compare(x, t) < 0) {
+                t.left = insert(t.left, x);
+            } else {
+                t.right = insert(t.right, x);
+            }
+            return balance(t);
+        }
+        
+        private TreeNode delete(TreeNode t, TreeNode x) {
+            if (t == x) {
+                if (t.left == null) {
+                    return t.right;
+                } else if (t.right == null) {
+                    return t.left;
+                }
+                // replace t with the smallest TreeNode in its right subtree
+                TreeNode min = t.right;
+                while (min.left != null) {
+                    min = min.left;
+                }
+                min.right = deleteMin(t.right);
+                min.left = t.left;
+                t.left = null;
+                t.right = null;
+                return balance(min);
+            }
+            if (compare(x, t) < 0) {
+                t.left = delete(t.left, x);
+            } else {
+                t.right = delete(t.right, x);
+            }
+            return balance(t);
+        }
+        
+        private TreeNode deleteMin(TreeNode t) {
+            if (t.left == null) {
+                return t.right;
+            }
+            t.left = deleteMin(t.left);
+            return balance(t);
+        }
+        
+        private int height(TreeNode t) {
+            return (t == null) ? 0 : t.height;
+        }
+        
+        private TreeNode balance(TreeNode t) {
+            t.height = 1 + Math.max(height(t.left), height(t.right));
+            int diff = height(t.left) - height(t.right);
+            if (diff > 1) {
+                if (height(t.left.left) < height(t.left.right)) {
+                    t.left = rotateLeft(t.left);
+                }
+                return rotateRight(t);
+            } else if (diff < -1) {
+                if (height(t.right.right) < height(t.right.left)) {
+                    t.right = rotateRight(t.right);
+                }
+                return rotateLeft(t);
+            }
+            return t;
+        }
+        
+        private TreeNode rotateRight(TreeNode t) {
+            TreeNode l = t.left;
+            t.left = l.right;
+            l.right = t;
+            t.height = 1 + Math.max(height(t.left), height(t.right));
+            l.height = 1 + Math.max(height(l.left), height(l.right));
+            return l;
+        }
+        
+        private TreeNode rotateLeft(TreeNode t) {
+            TreeNode r = t.right;
+            t.right = r.left;
+            r.left = t;
+            t.height = 1 + Math.max(height(t.left), height(t.right));
+            r.height = 1 + Math.max(height(r.left), height(r.right));
+            return r;
+        }
+    }
+    
+    /*
+     * compareKeys - orders two keys with the same hash code by class name 
+     * and then, if they are Comparable, by compareTo. Returns 0 if
+     * neither tells the keys apart.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(Object a, Object b) {
+        Class<?> ca = a.getClass();
+        Class<?> cb = b.getClass();
+        if (ca != cb) {
+            return ca.getName().compareTo(cb.getName());
+        } else if (a instanceof Comparable) {
+            return ((Comparable<Object>) a).compareTo(b);
+        } else {
+            return 0;
+        }
     }
     
+    // default load factor above which insert grows the table
+    public static final double DEFAULT_MAX_LOAD = 1.0;
+    
+    // number of old buckets migrated by each insert or remove during a resize
+    private static final int MIGRATE_STEP = 4;
+    
     private Node[] table;      // the hash table itself
     private int numKeys;       // the total number of keys in the table
+    private double maxLoad;    // the load factor that triggers growth
+    
+    // While a resize is in progress, the buckets of the previous table
+    // live on in oldTable. Buckets below migrateIndex have already been
+    // moved into table; the rest are still in oldTable.
+    private Node[] oldTable;
+    private int migrateIndex;
+    
+    // the number of structural changes (keys added or removed, calls to
+    // resize), which lets iterators detect concurrent modification
+    private int modCount;
+    
+    // When treeifyThreshold is positive, a bucket whose chain reaches 
+    // that length gets a TreeBin in the matching position of bins (or 
+    // oldBins for the buckets of oldTable). Otherwise both are null.
+    private int treeifyThreshold;
+    private TreeBin[] bins;
+    private TreeBin[] oldBins;
+    
+    // When counting is true, search (and searchAll) count the searches 
+    // and the calls to equals that they make; see setCounting().
+    private boolean counting;
+    private long searches;
+    private long equalsCalls;
+    
+    private HashStrategy strategy;    // computes the hash of each key
         
     /* hash function */
     public int h1(Object key) {
-        int h1 = key.hashCode() % table.length;
-        if (h1 < 0) {
-            h1 += table.length;
+        return indexFor(hash(key), table.length);
+    }
+    
+    /*
+     * hash - returns the key's hash, computed by the table's strategy
+     * (see defaultStrategy). Each node stores this value, so the key's 
+     * hashCode() is called only once per operation and never during a 
+     * resize.
+     */
+    private int hash(Object key) {
+        return strategy.hash(key);
+    }
+    
+    /* returns true if n is a power of two */
+    private static boolean isPowerOfTwo(int n) {
+        return (n & (n - 1)) == 0;
+    }
+    
+    /*
+     * indexFor - returns the bucket for the specified hash in a bucket
+     * array of the specified length. When the length is a power of two,
+     * the bucket is picked by masking the hash instead of dividing by 
+     * the length; otherwise it is the hash modulo the length.
+     */
+    private static int indexFor(int hash, int length) {
+        if (isPowerOfTwo(length)) {
+            return hash & (length - 1);
         }
-        return h1;
+        return Math.floorMod(hash, length);
+    }
+    
+    /*
+     * defaultStrategy - returns the strategy used when the constructor 
+     * isn't given one: HashStrategy.SPREAD for a power-of-two size, 
+     * whose buckets are picked by the low bits of the hash alone, and 
+     * HashStrategy.IDENTITY otherwise, because the hash code modulo 
+     * such a size already depends on all of its bits. Growth doubles 
+     * the size, so a table keeps indexing the same way as it grows.
+     */
+    private static HashStrategy defaultStrategy(int size) {
+        return isPowerOfTwo(size) ? HashStrategy.SPREAD : HashStrategy.IDENTITY;
     }
     
     /*** Add your constructor here ***/
+    /*
+     * Constructor for a table with the specified number of buckets. A 
+     * power-of-two number of buckets is fastest, because a bucket can 
+     * then be picked by masking the hash instead of dividing by the
+     * table length.
+     */
     public ChainedHashTable(int size){
+        this(size, DEFAULT_MAX_LOAD);
+    }
+    
+    /*
+     * Constructor for a table of the specified size that doubles in size
+     * whenever an insert pushes its load factor above maxLoad.
+     */
+    public ChainedHashTable(int size, double maxLoad) {
+        this(size, maxLoad, (size > 0) ? defaultStrategy(size) : HashStrategy.SPREAD);
+    }
+    
+    /*
+     * Constructor for a table that also takes the strategy that hashes
+     * its keys. When the size is a power of two, buckets are picked by 
+     * the low bits of the hash, so the strategy should mix all of the 
+     * bits of the hash code into them.
+     */
+    public ChainedHashTable(int size, double maxLoad, HashStrategy strategy) {
         if(size<=0){
             throw new IllegalArgumentException("invalid size");
-        }else{
-            table = new Node[size];
-            numKeys = 0;
         }
+        if (!(maxLoad > 0)) {
+            throw new IllegalArgumentException("invalid maxLoad: " + maxLoad);
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy must be non-null");
+        }
+        table = new Node[size];
+        numKeys = 0;
+        this.maxLoad = maxLoad;
+        oldTable = null;
+        migrateIndex = 0;
+        treeifyThreshold = 0;
+        bins = null;
+        oldBins = null;
+        counting = false;
+        this.strategy = strategy;
+    }
+    
+    /*
+     * setTreeifyThreshold - turns on treeified buckets: from now on, a 
+     * bucket whose chain reaches the specified length is converted into
+     * a balanced search tree, and it is converted back into a plain chain
+     * when it shrinks below half that length. A threshold of 0 turns
+     * treeified buckets off again.
+     */
+    public void setTreeifyThreshold(int threshold) {
+        if (threshold < 0 || threshold == 1) {
+            throw new IllegalArgumentException("invalid threshold: " + threshold);
+        }
+        finishResize();
+        treeifyThreshold = threshold;
+        if (threshold == 0) {
+            bins = null;
+        } else if (bins == null) {
+            bins = new TreeBin[table.length];
+        }
+    }
+    
+    /*
+     * binsFor - returns the array of TreeBins that goes with the 
+     * specified bucket array, or null if treeified buckets are off.
+     */
+    private TreeBin[] binsFor(Node[] tab) {
+        return (tab == table) ? bins : oldBins;
+    }
+    
+    /*
+     * treeifyIfLong - converts the specified bucket into a TreeBin if 
+     * its chain has reached the treeify threshold.
+     */
+    private void treeifyIfLong(Node[] tab, TreeBin[] tb, int index) {
+        int length = 0;
+        for (Node trav = tab[index]; trav != null && length < treeifyThreshold; trav = trav.next) {
+            length++;
+        }
+        if (length >= treeifyThreshold) {
+            tb[index] = new TreeBin(tab[index]);
+        }
+    }
+    
+    /*
+     * bucketArray - returns the array that currently holds the bucket for
+     * the keys with the specified hash: oldTable if a resize is in progress and the key's
+     * old bucket has not been migrated yet, and table otherwise.
+     */
+    private Node[] bucketArray(int hash) {
+        if (oldTable != null && indexFor(hash, oldTable.length) >= migrateIndex) {
+            return oldTable;
+        }
+        return table;
     }
     
     /*
@@ -63,26 +574,67 @@ public class ChainedHashTable implements HashTable {
         if (key == null) {
             throw new IllegalArgumentException("key must be non-null");
         }
-            int index = h1(key);
-            Node item = table[index];
-            if(table[index] == null){
-                table[index] = new Node(key, value);
-                numKeys++;
-            }else{
-                while(item!=null){
-                    if(key.equals(item.key)){
-                        item.values.insert(value);
-                        return true;
-                    }
-                    item = item.next;
+        migrateStep();
+        insertHashed(key, hash(key), value);
+        growIfNeeded();
+        return true;  
+    }
+    
+    /*
+     * insertHashed - does the work of insert for a key with the specified
+     * hash, without advancing or starting a resize.
+     */
+    private void insertHashed(Object key, int hash, Object value) {
+        Node[] tab = bucketArray(hash);
+        TreeBin[] tb = binsFor(tab);
+        int index = indexFor(hash, tab.length);
+        Node item = tab[index];
+        if (tb != null && tb[index] != null) {
+            TreeNode found = tb[index].find(key, hash);
+            if (found != null) {
+                found.node.addValue(value);
+                return;
+            }
+            Node newN = new Node(key, hash, value);
+            newN.next = tab[index];
+            tab[index] = newN;
+            tb[index].addFirst(newN);
+            numKeys++;
+            modCount++;
+        }else if(tab[index] == null){
+            tab[index] = new Node(key, hash, value);
+            numKeys++;
+            modCount++;
+        }else{
+            int length = 0;
+            while(item!=null){
+                if(item.hash == hash && key.equals(item.key)){
+                    item.addValue(value);
+                    return;
                 }
-                Node newN = new Node(key, value); //here, item = null.
-                newN.next = table[index];
-                table[index] = newN;
-                numKeys++;
+                item = item.next;
+                length++;
+            }
+            Node newN = new Node(key, hash, value); //here, item = null.
+            newN.next = tab[index];
+            tab[index] = newN;
+            numKeys++;
+            modCount++;
+            if (tb != null && length + 1 >= treeifyThreshold) {
+                tb[index] = new TreeBin(tab[index]);
             }
-            return true;  
         }
+    }
+    
+    /*
+     * growIfNeeded - starts doubling the table if its load factor has
+     * passed maxLoad.
+     */
+    private void growIfNeeded() {
+        if (numKeys > maxLoad * table.length) {
+            startResize(2 * table.length);
+        }
+    }
     
     /*
      * search - search for the specified key and return the
@@ -94,14 +646,32 @@ public class ChainedHashTable implements HashTable {
         if (key == null) {
             throw new IllegalArgumentException("key must be non-null");
         }
-        int index = h1(key);
-        Node trav = table[index];
-        if(table[index]==null){ //bucket not found
+        return searchHashed(key, hash(key));
+    }
+    
+    /*
+     * searchHashed - does the work of search for a key with the 
+     * specified hash.
+     */
+    private Queue<Object> searchHashed(Object key, int hash) {
+        if (counting) {
+            searches++;
+        }
+        Node[] tab = bucketArray(hash);
+        TreeBin[] tb = binsFor(tab);
+        int index = indexFor(hash, tab.length);
+        if (tb != null && tb[index] != null) {
+            TreeNode found = tb[index].find(key, hash);
+            return (found == null) ? null : found.node.getValue();
+        }
+        Node trav = tab[index];
+        if(trav==null){ //bucket not found
             return null;
         }else{ //bucket exists
             while(trav!=null){
-                if(key.equals(trav.key)){ //found in the bucket, return queue.
-                    return trav.values;
+                //found in the bucket, return queue.
+                if(trav.hash == hash && countedEquals(key, trav.key)){
+                    return trav.getValue();
                 }
                 trav = trav.next;
             }
@@ -110,6 +680,14 @@ public class ChainedHashTable implements HashTable {
         
     }
     
+    /* calls key.equals(other), counting the call if counting is on */
+    private boolean countedEquals(Object key, Object other) {
+        if (counting) {
+            equalsCalls++;
+        }
+        return key.equals(other);
+    }
+    
     /* 
      * remove - remove from the table the entry for the specified key
      * and return the associated collection of values, or null if the key 
@@ -120,24 +698,51 @@ public class ChainedHashTable implements HashTable {
         if (key == null) {
             throw new IllegalArgumentException("key must be non-null");
         }
-        int index = h1(key);
-        if(table[index]==null){ //bucket not found
+        migrateStep();
+        return removeHashed(key, hash(key));
+    }
+    
+    /*
+     * removeHashed - does the work of remove for a key with the
+     * specified hash, without advancing a resize.
+     */
+    private Queue<Object> removeHashed(Object key, int hash) {
+        Node[] tab = bucketArray(hash);
+        TreeBin[] tb = binsFor(tab);
+        int index = indexFor(hash, tab.length);
+        if (tb != null && tb[index] != null) {
+            TreeBin bin = tb[index];
+            TreeNode found = bin.find(key, hash);
+            if (found == null) {
+                return null;
+            }
+            bin.remove(found, tab, index);
+            if (bin.size < treeifyThreshold / 2) {
+                tb[index] = null;     // back to a plain chain
+            }
+            numKeys--;
+            modCount++;
+            return found.node.getValue();
+        }
+        if(tab[index]==null){ //bucket not found
             return null;
         }else{
-            Node trav = table[index];
+            Node trav = tab[index];
             Node nextN = trav.next;
             Queue<Object> res = null;
-            if(key.equals(trav.key)){
-                res = trav.values;
-                table[index] = nextN;
+            if(trav.hash == hash && key.equals(trav.key)){
+                res = trav.getValue();
+                tab[index] = nextN;
                 numKeys--;
+                modCount++;
                 return res;
             }
             while(nextN!=null){
-                if(key.equals(nextN.key)){ //found in the bucket
-                    res = nextN.values;
+                if(nextN.hash == hash && key.equals(nextN.key)){ //found in the bucket
+                    res = nextN.getValue();
                     trav.next = nextN.next;
                     numKeys--;
+                    modCount++;
                     return res;
                 }
                 trav = nextN;
@@ -148,6 +753,115 @@ public class ChainedHashTable implements HashTable {
     }
     
     
+    /*
+     * insertAll - insert the pairs (keys[i], values[i]) in the hash table.
+     * All of the keys are hashed first, and the pairs are then inserted
+     * bucket by bucket, so that each chain is walked while it is still in
+     * the cache. Values for the same key keep the order in which they 
+     * appear. Always returns true.
+     *
+     * The load is checked after every pair, as in insert, but a resize
+     * that the batch starts is completed at once, so the rest of the 
+     * batch never goes into the old, overloaded buckets.
+     */
+    public boolean insertAll(Object[] keys, Object[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values must have the same length");
+        }
+        // advance a resize in progress as far as single inserts would have
+        for (int i = 0; i < keys.length && oldTable != null; i++) {
+            migrateStep();
+        }
+        
+        int[] hashes = hashAll(keys);
+        long[] order = bucketOrder(hashes);
+        for (int j = 0; j < order.length; j++) {
+            int i = (int) order[j];
+            insertHashed(keys[i], hashes[i], values[i]);
+            if (numKeys > maxLoad * table.length) {
+                startResize(2 * table.length);
+                finishResize();
+            }
+        }
+        return true;
+    }
+    
+    /*
+     * searchAll - search for each of the specified keys and return an
+     * array whose element i is the collection of values for keys[i], or 
+     * null if that key is not in the table. The lookups are grouped by
+     * bucket, as in insertAll.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Queue<Object>[] searchAll(Object[] keys) {
+        int[] hashes = hashAll(keys);
+        long[] order = bucketOrder(hashes);
+        Queue<Object>[] results = (Queue<Object>[]) new Queue[keys.length];
+        for (int j = 0; j < order.length; j++) {
+            int i = (int) order[j];
+            results[i] = searchHashed(keys[i], hashes[i]);
+        }
+        return results;
+    }
+    
+    /*
+     * removeAll - remove the entries for each of the specified keys and 
+     * return an array whose element i is the collection of values for 
+     * keys[i], or null if that key was not in the table. The removals are
+     * grouped by bucket, as in insertAll.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Queue<Object>[] removeAll(Object[] keys) {
+        for (int i = 0; i < keys.length && oldTable != null; i++) {
+            migrateStep();
+        }
+        
+        int[] hashes = hashAll(keys);
+        long[] order = bucketOrder(hashes);
+        Queue<Object>[] results = (Queue<Object>[]) new Queue[keys.length];
+        for (int j = 0; j < order.length; j++) {
+            int i = (int) order[j];
+            results[i] = removeHashed(keys[i], hashes[i]);
+        }
+        return results;
+    }
+    
+    /*
+     * hashAll - returns the hashes of the specified keys, checking that
+     * none of them is null before the table is touched.
+     */
+    private int[] hashAll(Object[] keys) {
+        int[] hashes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                throw new IllegalArgumentException("key must be non-null");
+            }
+            hashes[i] = hash(keys[i]);
+        }
+        return hashes;
+    }
+    
+    /*
+     * bucketOrder - returns the positions 0 .. hashes.length-1 sorted by
+     * the bucket that each hash currently falls in, and by position 
+     * within a bucket. Each element holds the bucket number (as numbered
+     * in numBuckets) in its upper 32 bits and the position in its lower
+     * 32 bits.
+     */
+    private long[] bucketOrder(int[] hashes) {
+        long[] order = new long[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            Node[] tab = bucketArray(hashes[i]);
+            long bucket = indexFor(hashes[i], tab.length);
+            if (tab != table) {
+                bucket += table.length;
+            }
+            order[i] = (bucket << 32) | i;
+        }
+        Arrays.sort(order);
+        return order;
+    }
+    
     /*** Add the other required methods here ***/
     /*
      * getNumKeys() - an accessor method for the number of keys.
@@ -164,6 +878,177 @@ public class ChainedHashTable implements HashTable {
     public double load(){
         return (double)numKeys/table.length;
     }
+    
+    /*
+     * Public static nested class for a snapshot of the shape of the table,
+     * returned by stats(). A successful search examines the keys of a 
+     * chain up to and including the one it is looking for, so its cost 
+     * is the key's position in the chain (or its depth in a treeified 
+     * bucket). With a good hash function that cost averages about 
+     * 1 + load/2; a much higher observed cost means the keys are 
+     * bunching up in a few buckets.
+     */
+    public static class ChainStats {
+        private int numBuckets;
+        private int numKeys;
+        private int emptyBuckets;
+        private int maxChain;
+        private int[] histogram;
+        private long totalCost;
+        private long searches;
+        private long equalsCalls;
+        
+        /* getNumBuckets - returns the number of buckets, old and new */
+        public int getNumBuckets() {
+            return numBuckets;
+        }
+        
+        public int getNumKeys() {
+            return numKeys;
+        }
+        
+        public int getEmptyBuckets() {
+            return emptyBuckets;
+        }
+        
+        /* getMaxChain - returns the number of keys in the fullest bucket */
+        public int getMaxChain() {
+            return maxChain;
+        }
+        
+        /*
+         * getHistogram - returns an array whose element i is the number
+         * of buckets that hold exactly i keys.
+         */
+        public int[] getHistogram() {
+            return histogram.clone();
+        }
+        
+        /*
+         * getExpectedCost - returns the average number of keys that a
+         * successful search examines if the keys are spread uniformly:
+         * 1 + (keys - 1)/(2 * buckets), or about 1 + load/2.
+         */
+        public double getExpectedCost() {
+            if (numKeys == 0) {
+                return 0.0;
+            }
+            return 1.0 + (numKeys - 1) / (2.0 * numBuckets);
+        }
+        
+        /*
+         * getObservedCost - returns the average number of keys that a
+         * successful search examines in the table as it actually is.
+         */
+        public double getObservedCost() {
+            if (numKeys == 0) {
+                return 0.0;
+            }
+            return (double) totalCost / numKeys;
+        }
+        
+        /*
+         * getSearches and getEqualsCalls - return the searches counted 
+         * since counting was turned on, and the calls to equals that 
+         * they made. Both are 0 if counting is off.
+         */
+        public long getSearches() {
+            return searches;
+        }
+        
+        public long getEqualsCalls() {
+            return equalsCalls;
+        }
+        
+        /* getEqualsPerSearch - returns the average calls to equals per search */
+        public double getEqualsPerSearch() {
+            return (searches == 0) ? 0.0 : (double) equalsCalls / searches;
+        }
+        
+        public String toString() {
+            String s = "buckets=" + numBuckets + " keys=" + numKeys 
+                       + " empty=" + emptyBuckets + " maxChain=" + maxChain
+                       + " histogram=" + Arrays.toString(histogram)
+                       + String.format(" cost=%.3f (expected %.3f)", 
+                                       getObservedCost(), getExpectedCost());
+            if (searches > 0) {
+                s += String.format(" equals/search=%.3f", getEqualsPerSearch());
+            }
+            return s;
+        }
+    }
+    
+    /*
+     * setCounting - turns on or off the counting of searches and of the
+     * calls to equals that they make, and resets both counts to 0. The
+     * counts are reported by stats(). Counting is off by default; when
+     * it is off, search pays only for a test of a boolean.
+     */
+    public void setCounting(boolean counting) {
+        this.counting = counting;
+        searches = 0;
+        equalsCalls = 0;
+    }
+    
+    /*
+     * stats - returns a ChainStats for the table as it is now, including
+     * the buckets that a resize in progress hasn't migrated yet. Takes
+     * time proportional to the number of buckets plus the number of keys.
+     */
+    public ChainStats stats() {
+        ChainStats stats = new ChainStats();
+        int oldLength = (oldTable == null) ? 0 : oldTable.length;
+        int[] lengths = new int[table.length + oldLength];
+        int n = 0;
+        n = chainStats(table, bins, 0, table.length, stats, lengths, n);
+        if (oldTable != null) {
+            n = chainStats(oldTable, oldBins, migrateIndex, oldTable.length, 
+                           stats, lengths, n);
+        }
+        
+        stats.histogram = new int[stats.maxChain + 1];
+        for (int i = 0; i < n; i++) {
+            stats.histogram[lengths[i]]++;
+        }
+        stats.numBuckets = n;
+        stats.emptyBuckets = stats.histogram[0];
+        stats.searches = searches;
+        stats.equalsCalls = equalsCalls;
+        return stats;
+    }
+    
+    /*
+     * chainStats - adds the buckets from start to end of the specified 
+     * array to stats, stores their lengths in lengths starting at 
+     * position n, and returns the position after the last one.
+     */
+    private static int chainStats(Node[] tab, TreeBin[] tb, int start, int end,
+                                  ChainStats stats, int[] lengths, int n) {
+        for (int i = start; i < end; i++) {
+            int length = 0;
+            if (tb != null && tb[i] != null) {
+                length = tb[i].size;
+                stats.totalCost += depthSum(tb[i].root, 1);
+            } else {
+                for (Node trav = tab[i]; trav != null; trav = trav.next) {
+                    length++;
+                    stats.totalCost += length;
+                }
+            }
+            stats.numKeys += length;
+            stats.maxChain = Math.max(stats.maxChain, length);
+            lengths[n++] = length;
+        }
+        return n;
+    }
+    
+    /* returns the sum of the depths of the nodes in the specified subtree */
+    private static long depthSum(TreeNode t, int depth) {
+        if (t == null) {
+            return 0;
+        }
+        return depth + depthSum(t.left, depth + 1) + depthSum(t.right, depth + 1);
+    }
 
     /*
      * getAllKeys() - returns an array of type Object containing all of the 
@@ -182,30 +1067,319 @@ public class ChainedHashTable implements HashTable {
                 }
             }   
         }
-        return res;
+        if (oldTable != null) {
+            for (int i = migrateIndex; i < oldTable.length; i++) {
+                for (Node trav = oldTable[i]; trav != null; trav = trav.next) {
+                    res[count] = trav.key;
+                    count++;
+                }
+            }
+        }
+        return res;
+    }
+
+    /*
+     * keyIterator - returns an iterator over the keys in the table.
+     *
+     * This and the other iterators and spliterators below are fail-fast:
+     * if a key is added to or removed from the table after one of them
+     * is created, other than by inserting another value for an existing
+     * key, or if the table is resized with resize(), its next step 
+     * throws a ConcurrentModificationException.
+     *
+     * Creating one of them completes any resize in progress, as
+     * visiting every bucket costs as much anyway. From then on, only 
+     * adding a key can start another resize, so the migration steps 
+     * taken by insert and remove never move a node out from under it.
+     */
+    public Iterator<Object> keyIterator() {
+        return Spliterators.iterator(keySpliterator());
+    }
+    
+    /*
+     * entryIterator - returns an iterator over the (key, values) entries
+     * in the table. The entries are the table's own nodes, so no objects
+     * are allocated per entry, and getValue() returns the same queue as
+     * search. setValue is not supported.
+     */
+    public Iterator<Map.Entry<Object, Queue<Object>>> entryIterator() {
+        return Spliterators.iterator(entrySpliterator());
+    }
+    
+    /*
+     * keySpliterator - returns a spliterator over the keys in the table
+     * that splits by ranges of buckets, so that
+     * StreamSupport.stream(table.keySpliterator(), true) can process
+     * the keys in parallel.
+     */
+    public Spliterator<Object> keySpliterator() {
+        finishResize();
+        return new KeySpliterator(0, table.length, modCount);
+    }
+    
+    /*
+     * entrySpliterator - returns a spliterator over the (key, values)
+     * entries in the table that splits by ranges of buckets.
+     */
+    public Spliterator<Map.Entry<Object, Queue<Object>>> entrySpliterator() {
+        finishResize();
+        return new EntrySpliterator(0, table.length, modCount);
+    }
+    
+    /*
+     * Private inner class for a spliterator over the nodes in a range
+     * of buckets. No resize is in progress when one is created.
+     */
+    private abstract class TableSpliterator<T> implements Spliterator<T> {
+        private Node[] tab;        // the table when the spliterator was made
+        private int index;         // the next bucket to visit
+        private int fence;         // one past the last bucket to visit
+        private Node current;      // the next node in the current bucket
+        private int expectedModCount;
+        
+        private TableSpliterator(int origin, int fence, int expectedModCount) {
+            tab = table;
+            index = origin;
+            this.fence = fence;
+            current = null;
+            this.expectedModCount = expectedModCount;
+        }
+        
+        /* returns the element of this spliterator for the specified node */
+        abstract T element(Node n);
+        
+        /* returns a spliterator of the same kind over the specified buckets */
+        abstract Spliterator<T> split(int origin, int fence, int expectedModCount);
+        
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (current == null && index < fence) {
+                current = tab[index];
+                index++;
+            }
+            if (current == null) {
+                return false;
+            }
+            Node n = current;
+            current = n.next;
+            action.accept(element(n));
+            return true;
+        }
+        
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            Node n = current;
+            int i = index;
+            current = null;
+            index = fence;
+            while (n != null || i < fence) {
+                if (n == null) {
+                    n = tab[i];
+                    i++;
+                } else {
+                    action.accept(element(n));
+                    n = n.next;
+                }
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+        
+        public Spliterator<T> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (current != null || mid <= index) {
+                return null;
+            }
+            Spliterator<T> prefix = split(index, mid, expectedModCount);
+            index = mid;
+            return prefix;
+        }
+        
+        public long estimateSize() {
+            return (long) numKeys * (fence - index) / tab.length;
+        }
+        
+        public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+    
+    private class KeySpliterator extends TableSpliterator<Object> {
+        private KeySpliterator(int origin, int fence, int expectedModCount) {
+            super(origin, fence, expectedModCount);
+        }
+        
+        Object element(Node n) {
+            return n.key;
+        }
+        
+        Spliterator<Object> split(int origin, int fence, int expectedModCount) {
+            return new KeySpliterator(origin, fence, expectedModCount);
+        }
+    }
+    
+    private class EntrySpliterator extends TableSpliterator<Map.Entry<Object, Queue<Object>>> {
+        private EntrySpliterator(int origin, int fence, int expectedModCount) {
+            super(origin, fence, expectedModCount);
+        }
+        
+        Map.Entry<Object, Queue<Object>> element(Node n) {
+            return n;
+        }
+        
+        Spliterator<Map.Entry<Object, Queue<Object>>> split(int origin, int fence,
+                                                            int expectedModCount) {
+            return new EntrySpliterator(origin, fence, expectedModCount);
+        }
+    }
+    
+    /*
+     * resize() - grows the table to have that new size. Unlike the 
+     * automatic growth triggered by insert, the whole table is migrated
+     * before this method returns.
+     */
+    public void resize(int size){
+        if(size<table.length){
+            throw new IllegalArgumentException("new size too small");
+        }
+        if(size!=table.length){
+            startResize(size);
+            modCount++;
+        }
+        finishResize();
+    }
+    
+    /*
+     * startResize - replaces the table with an empty one of the specified
+     * size and keeps the current buckets in oldTable, from where 
+     * migrateStep moves them over a few at a time.
+     */
+    private void startResize(int size) {
+        finishResize();     // only one resize can be in progress at a time
+        oldTable = table;
+        table = new Node[size];
+        migrateIndex = 0;
+        if (bins != null) {
+            oldBins = bins;
+            bins = new TreeBin[size];
+        }
+    }
+    
+    /*
+     * migrateStep - if a resize is in progress, migrates the next 
+     * MIGRATE_STEP buckets of oldTable into table.
+     */
+    private void migrateStep() {
+        if (oldTable == null) {
+            return;
+        }
+        for (int i = 0; i < MIGRATE_STEP && migrateIndex < oldTable.length; i++) {
+            migrateBucket(migrateIndex);
+            migrateIndex++;
+        }
+        if (migrateIndex == oldTable.length) {
+            oldTable = null;
+            oldBins = null;
+            migrateIndex = 0;
+        }
+    }
+    
+    /*
+     * finishResize - migrates all of the remaining buckets of oldTable,
+     * completing any resize that is in progress.
+     */
+    private void finishResize() {
+        if (oldTable == null) {
+            return;
+        }
+        while (migrateIndex < oldTable.length) {
+            migrateBucket(migrateIndex);
+            migrateIndex++;
+        }
+        oldTable = null;
+        oldBins = null;
+        migrateIndex = 0;
     }
-
+    
     /*
-     * resize() - grows the table to have that new size. 
+     * migrateBucket - moves the nodes in the specified bucket of oldTable
+     * into table. The existing nodes are relinked, so neither the nodes
+     * nor their collections of values are reallocated.
      */
-    public void resize(int size){
-        if(size<table.length){
-            throw new IllegalArgumentException("new size too small");
+    private void migrateBucket(int i) {
+        Node trav = oldTable[i];
+        if (trav == null) {
+            return;
         }
-        if(size!=table.length){
-            ChainedHashTable newT = new ChainedHashTable(size);
-            for(int i=0; i<table.length;i++){
-                if(table[i]!=null){
-                    Node trav = table[i];
-                    while(trav!=null){
-                        newT.insert(trav.key,trav.values);
-                        trav = trav.next;
+        oldTable[i] = null;
+        boolean wasTree = false;
+        if (oldBins != null && oldBins[i] != null) {
+            oldBins[i] = null;
+            wasTree = true;
+        }
+        
+        // When the table doubles, the nodes of old bucket i can only go to
+        // buckets i and i + oldTable.length (for a hash h, both h mod 2n 
+        // and the masked h & (2n-1) leave h mod n unchanged) -- and no 
+        // other old bucket feeds those, so they are still empty.
+        int oldLength = oldTable.length;
+        if (table.length == 2 * oldLength) {
+            // split the chain into the nodes that stay at index i and the 
+            // ones that move to i + oldLength, keeping their order
+            Node stayHead = null, stayTail = null;
+            Node moveHead = null, moveTail = null;
+            while (trav != null) {
+                Node next = trav.next;
+                trav.next = null;
+                if (indexFor(trav.hash, table.length) == i) {
+                    if (stayTail == null) {
+                        stayHead = trav;
+                    } else {
+                        stayTail.next = trav;
+                    }
+                    stayTail = trav;
+                } else {
+                    if (moveTail == null) {
+                        moveHead = trav;
+                    } else {
+                        moveTail.next = trav;
                     }
+                    moveTail = trav;
                 }
+                trav = next;
+            }
+            table[i] = stayHead;
+            table[i + oldLength] = moveHead;
+            if (wasTree && bins != null) {
+                // part of a long chain may still be long in its new bucket
+                treeifyIfLong(table, bins, i);
+                treeifyIfLong(table, bins, i + oldLength);
+            }
+        } else {
+            // any other new size: a node may land in a bucket that already
+            // holds nodes migrated from other old buckets, or a TreeBin
+            while (trav != null) {
+                Node next = trav.next;
+                int index = indexFor(trav.hash, table.length);
+                trav.next = table[index];
+                table[index] = trav;
+                if (bins != null) {
+                    if (bins[index] != null) {
+                        bins[index].addFirst(trav);
+                    } else {
+                        treeifyIfLong(table, bins, index);
+                    }
+                }
+                trav = next;
             }
-            table = newT.table;
-        }else{
-            return;
         }
     }
     
@@ -242,6 +1416,52 @@ public class ChainedHashTable implements HashTable {
         s += "]";
         return s;
     }
+    
+    /*
+     * toDebugString - returns the same representation as toString, 
+     * followed, while a resize is in progress, by " + " and the buckets
+     * of the previous table that haven't been migrated yet.
+     */
+    public String toDebugString() {
+        String s = toString();
+        if (oldTable != null) {
+            s += " + " + bucketsToString(oldTable);
+        }
+        return s;
+    }
+    
+    /*
+     * bucketsToString - returns a string representation of the 
+     * buckets in the specified array, in the format of toString.
+     */
+    private static String bucketsToString(Node[] table) {
+        String s = "[";
+        
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] == null) {
+                s += "null";
+            } else {
+                String keys = "{";
+                Node trav = table[i];
+                while (trav != null) {
+                    keys += trav.key;
+                    if (trav.next != null) {
+                        keys += "; ";
+                    }
+                    trav = trav.next;
+                }
+                keys += "}";
+                s += keys;
+            }
+        
+            if (i < table.length - 1) {
+                s += ", ";
+            }
+        }       
+        
+        s += "]";
+        return s;
+    }
 
     public static void main(String[] args) {
         /** Add your unit tests here **/
@@ -576,6 +1796,358 @@ public class ChainedHashTable implements HashTable {
         }
         System.out.println(); 
         
+        System.out.println("(7.3) Testing on resize");
+        try {
+            ChainedHashTable table = new ChainedHashTable(5);
+            table.insert("apple", 5); 
+            table.insert("apple", 10); 
+            table.resize(7);
+            String results = table.search("apple").toString();
+            String expected = "{5, 10}";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(7.4) Testing on resize");
+        try {
+            // a power-of-two table picks buckets from the low bits of the
+            // spread hash code, and doubling splits each bucket in two
+            ChainedHashTable table = new ChainedHashTable(8);
+            table.insert("howdy", 15);
+            table.insert("goodbye", 10);
+            table.insert("apple", 5); 
+            table.resize(16);
+            String results = table.toString();
+            String expected = "[null, {apple}, {howdy}, null, null, null, null, null, "
+                              + "null, null, null, {goodbye}, null, null, null, null]";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(8.1) Testing on automatic growth");
+        try {
+            ChainedHashTable table = new ChainedHashTable(4, 0.75);
+            for (int i = 0; i < 100; i++) {
+                table.insert("key" + i, i);
+            }
+            boolean results = table.load() <= 0.75 && table.getNumKeys() == 100;
+            for (int i = 0; i < 100; i++) {
+                Queue<Object> vals = table.search("key" + i);
+                results = results && vals != null && vals.peek().equals(i);
+            }
+            boolean expected = true;
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results == expected);
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(8.2) Testing on automatic growth");
+        try {
+            ChainedHashTable table = new ChainedHashTable(4, 0.75);
+            for (int i = 0; i < 7; i++) {
+                table.insert(i, "a" + i);
+            }
+            // 7 keys in 8 buckets -> grows to 16 and migrates incrementally
+            table.insert(0, "b0");
+            table.remove(3);
+            String results = table.search(0) + " " + table.search(3) + " "
+                             + table.getNumKeys() + " " + table.getAllKeys().length;
+            String expected = "{a0, b0} null 6 6";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(8.3) Testing on toDebugString during a resize");
+        try {
+            ChainedHashTable table = new ChainedHashTable(8, 0.75);
+            for (int i = 0; i < 7; i++) {
+                table.insert(i, i);
+            }
+            // the 7th key starts a resize to 16 buckets; none migrated yet
+            String results = table.toString() + " | " + table.toDebugString();
+            String empty = "[null, null, null, null, null, null, null, null, "
+                           + "null, null, null, null, null, null, null, null]";
+            String expected = empty + " | " + empty 
+                              + " + [{5; 0}, null, {2}, {3}, null, {4; 1}, null, {6}]";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(9.1) Testing on treeified buckets");
+        try {
+            // "Aa" and "BB" have the same hash code, so all 64 of these
+            // six-pair strings land in the same bucket
+            String[] keys = new String[64];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = "";
+                for (int bit = 0; bit < 6; bit++) {
+                    keys[i] += ((i >> bit) & 1) == 0 ? "Aa" : "BB";
+                }
+            }
+            ChainedHashTable table = new ChainedHashTable(5);
+            table.setTreeifyThreshold(8);
+            for (int i = 0; i < keys.length; i++) {
+                table.insert(keys[i], i);
+            }
+            for (int i = 0; i < keys.length; i += 2) {
+                table.remove(keys[i]);
+            }
+            boolean results = table.getNumKeys() == 32;
+            for (int i = 0; i < keys.length; i++) {
+                Queue<Object> vals = table.search(keys[i]);
+                if (i % 2 == 0) {
+                    results = results && vals == null;
+                } else {
+                    results = results && vals != null && vals.peek().equals(i);
+                }
+            }
+            boolean expected = true;
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results == expected);
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(9.2) Testing on treeified buckets");
+        try {
+            // resizing a table whose size is not a power of two moves the
+            // keys of a tree into a bucket that may already hold others
+            String[] keys = new String[64];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = "";
+                for (int bit = 0; bit < 6; bit++) {
+                    keys[i] += ((i >> bit) & 1) == 0 ? "Aa" : "BB";
+                }
+            }
+            ChainedHashTable table = new ChainedHashTable(5, 64.0);      // never grows on its own
+            table.setTreeifyThreshold(8);
+            for (int i = 0; i < keys.length; i++) {
+                table.insert(keys[i], i);
+                table.insert(i, i);
+            }
+            table.resize(7);
+            boolean results = table.getNumKeys() == 128;
+            for (int i = 0; i < keys.length; i++) {
+                Queue<Object> vals = table.search(keys[i]);
+                results = results && vals != null && vals.peek().equals(i);
+                vals = table.remove(i);
+                results = results && vals != null && vals.peek().equals(i);
+            }
+            results = results && table.getNumKeys() == 64;
+            boolean expected = true;
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results == expected);
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(10.1) Testing on keySpliterator");
+        try {
+            ChainedHashTable table = new ChainedHashTable(4, 0.75);
+            for (int i = 1; i <= 1000; i++) {
+                table.insert(i, "v" + i);
+            }
+            long results = StreamSupport.stream(table.keySpliterator(), true)
+                                        .mapToLong(k -> (Integer) k).sum();
+            long expected = 500500;
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results == expected);
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(10.2) Testing on entryIterator");
+        try {
+            ChainedHashTable table = new ChainedHashTable(8);
+            table.insert("howdy", 15);
+            table.insert("apple", 5);
+            table.insert("howdy", 25);
+            String results = "";
+            Iterator<Map.Entry<Object, Queue<Object>>> iter = table.entryIterator();
+            while (iter.hasNext()) {
+                results += iter.next() + " ";
+            }
+            iter = table.entryIterator();
+            iter.next();
+            table.remove("apple");
+            try {
+                iter.hasNext();
+            } catch (ConcurrentModificationException e) {
+                results += "CME";
+            }
+            String expected = "apple={5} howdy={15, 25} CME";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(10.3) Testing on keyIterator during a resize");
+        try {
+            ChainedHashTable table = new ChainedHashTable(8, 0.75);
+            for (int i = 0; i < 7; i++) {
+                table.insert(i, i);
+            }
+            // the 7th key starts a resize; neither of these adds or
+            // removes a key, so the iterator must carry on
+            Iterator<Object> iter = table.keyIterator();
+            int sum = (Integer) iter.next();
+            for (int i = 0; i < 8; i++) {
+                table.insert(0, "b" + i);
+                table.remove(100 + i);
+            }
+            while (iter.hasNext()) {
+                sum += (Integer) iter.next();
+            }
+            String results = sum + " " + table.search(0).size();
+            String expected = "21 9";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(11.1) Testing on insertAll/searchAll/removeAll");
+        try {
+            ChainedHashTable table = new ChainedHashTable(4);
+            Object[] keys = {"howdy", "goodbye", "apple", "howdy", "pear"};
+            Object[] values = {15, 10, 5, 25, 6};
+            table.insertAll(keys, values);
+            Queue<Object>[] removed = table.removeAll(new Object[] {"pear", "kiwi"});
+            Queue<Object>[] found = table.searchAll(new Object[] {"apple", "pear", "howdy"});
+            String results = Arrays.toString(found) + " " + Arrays.toString(removed)
+                             + " " + table.getNumKeys();
+            String expected = "[{5}, null, {15, 25}] [{6}, null] 3";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(12.1) Testing on stats");
+        try {
+            ChainedHashTable table = new ChainedHashTable(4);
+            table.insert("howdy", 15);
+            table.insert("goodbye", 10);
+            table.insert("apple", 5);
+            table.setCounting(true);
+            table.search("apple");
+            table.search("apple");
+            ChainStats stats = table.stats();
+            String results = stats.getNumKeys() + " " + stats.getNumBuckets() + " " 
+                             + stats.getEmptyBuckets() + " " + stats.getMaxChain() + " "
+                             + Arrays.toString(stats.getHistogram()) + " "
+                             + stats.getObservedCost() + " " + stats.getExpectedCost() + " "
+                             + stats.getSearches() + " " + stats.getEqualsCalls();
+            String expected = "3 4 1 1 [1, 3] 1.0 1.25 2 2";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
+        System.out.println("(13.1) Testing on size/iterator/insertAll of values");
+        try {
+            ChainedHashTable table = new ChainedHashTable(4);
+            table.insert("howdy", 15);
+            table.insert("apple", 5);
+            table.insert("howdy", 25);
+            Queue<Object> howdy = table.search("howdy");
+            Queue<Object> apple = table.search("apple");
+            String results = howdy.size() + " " + apple.size() + " ";
+            for (Object value : howdy) {
+                results += value + " ";
+            }
+            for (Object value : apple) {
+                results += value + " ";
+            }
+            LLQueue<Object> merged = new LLQueue<Object>();
+            merged.insertAll(howdy);
+            LLQueue<Object> more = new LLQueue<Object>();
+            more.insertAll(apple);
+            results += merged.spliceFrom(more) + " " + merged + " " + merged.size() 
+                       + " " + more.isEmpty() + " " + howdy;
+            String expected = "2 1 15 25 5 1 {15, 25, 5} 3 true {15, 25}";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println(); 
+        
 
     }
 }
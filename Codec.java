@@ -0,0 +1,65 @@
+/*
+ * Codec.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * A generic interface for converting objects of type T to and from bytes,
+ * for hash tables that store their keys and values outside of the Java
+ * heap. Two objects are treated as equal keys exactly when their
+ * encodings are equal.
+ */
+public interface Codec<T> {
+    /*
+     * writes the encoding of the specified object into buf, starting at
+     * its position and advancing it. Throws a BufferOverflowException if
+     * buf doesn't have enough room; the caller then tries again with a
+     * bigger buffer.
+     */
+    void encode(T obj, ByteBuffer buf);
+
+    /*
+     * reads an object from the bytes between the position and the limit
+     * of buf, which are exactly the bytes written by encode.
+     */
+    T decode(ByteBuffer buf);
+
+    /* a codec for Strings, in UTF-8 */
+    Codec<String> STRING = new Codec<String>() {
+        public void encode(String obj, ByteBuffer buf) {
+            buf.put(obj.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public String decode(ByteBuffer buf) {
+            byte[] bytes = new byte[buf.remaining()];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /* a codec for Longs, in 8 bytes */
+    Codec<Long> LONG = new Codec<Long>() {
+        public void encode(Long obj, ByteBuffer buf) {
+            buf.putLong(obj);
+        }
+
+        public Long decode(ByteBuffer buf) {
+            return buf.getLong();
+        }
+    };
+
+    /* a codec for Integers, in 4 bytes */
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+        public void encode(Integer obj, ByteBuffer buf) {
+            buf.putInt(obj);
+        }
+
+        public Integer decode(ByteBuffer buf) {
+            return buf.getInt();
+        }
+    };
+}
@@ -0,0 +1,326 @@
+/*
+ * ConcurrentChainedHashTable.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * A thread-safe hash table that uses separate chaining.
+ *
+ * The buckets are divided among a fixed number of segments. Each segment
+ * has its own lock and its own bucket array, so threads working on keys in
+ * different segments never wait for each other. A segment grows on its
+ * own, under its own lock, when its load passes maxLoad, and resize()
+ * grows the segments one at a time, so no resize stops the whole table.
+ * The number of keys is kept in a LongAdder, which spreads its updates
+ * over striped cells instead of one contended counter.
+ *
+ * Because another thread may change a key's values at any time, search
+ * returns a copy of the values taken under the segment's lock, not the
+ * queue that is stored in the table.
+ */
+public class ConcurrentChainedHashTable implements HashTable {
+    /* Private inner class for a node in a bucket's chain */
+    private static class Node {
+        private Object key;
+        private int hash;
+        private ArrayQueue<Object> values;
+        private Node next;
+
+        private Node(Object key, int hash, Object value, Node next) {
+            this.key = key;
+            this.hash = hash;
+            values = new ArrayQueue<Object>();
+            values.insert(value);
+            this.next = next;
+        }
+    }
+
+    /*
+     * Private inner class for a segment: a lock together with the
+     * buckets that it guards.
+     */
+    private static class Segment {
+        private final ReentrantLock lock;
+        private volatile Node[] table;
+        private int numKeys;
+
+        private Segment(int size) {
+            lock = new ReentrantLock();
+            table = new Node[size];
+            numKeys = 0;
+        }
+    }
+
+    // the default number of segments
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    // the default load factor above which a segment grows
+    public static final double DEFAULT_MAX_LOAD = 0.75;
+
+    private Segment[] segments;
+    private int segmentShift;      // selects the segment from the high hash bits
+    private LongAdder numKeys;     // the total number of keys in the table
+    private double maxLoad;
+
+    /*
+     * Constructor for a table with at least the specified number of
+     * buckets, divided among the default number of segments.
+     */
+    public ConcurrentChainedHashTable(int size) {
+        this(size, DEFAULT_CONCURRENCY, DEFAULT_MAX_LOAD);
+    }
+
+    /*
+     * Constructor for a table with at least the specified number of
+     * buckets, divided among at least concurrency segments. The number of
+     * segments and of buckets per segment are rounded up to powers of two.
+     */
+    public ConcurrentChainedHashTable(int size, int concurrency, double maxLoad) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("invalid size");
+        }
+        if (concurrency <= 0 || concurrency > (1 << 16)) {
+            throw new IllegalArgumentException("invalid concurrency: " + concurrency);
+        }
+        if (!(maxLoad > 0)) {
+            throw new IllegalArgumentException("invalid maxLoad: " + maxLoad);
+        }
+
+        int numSegments = powerOfTwoAtLeast(concurrency);
+        int segmentSize = powerOfTwoAtLeast((size + numSegments - 1) / numSegments);
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        segmentShift = 32 - Integer.numberOfTrailingZeros(numSegments);
+        numKeys = new LongAdder();
+        this.maxLoad = maxLoad;
+    }
+
+    /* returns the smallest power of two that is >= n */
+    private static int powerOfTwoAtLeast(int n) {
+        int p = 1;
+        while (p < n) {
+            p *= 2;
+        }
+        return p;
+    }
+
+    /*
+     * hash - mixes the bits of the key's hash code, so that both the high
+     * bits (which pick the segment) and the low bits (which pick the
+     * bucket) depend on all of them.
+     */
+    private static int hash(Object key) {
+        return HashStrategy.SPREAD.hash(key);
+    }
+
+    /* returns the segment that holds the keys with the specified hash */
+    private Segment segmentFor(int hash) {
+        if (segmentShift == 32) {
+            return segments[0];
+        }
+        return segments[hash >>> segmentShift];
+    }
+
+    /*
+     * insert - insert the specified (key, value) pair in the hash table.
+     * Always returns true, because the table grows as needed.
+     */
+    public boolean insert(Object key, Object value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        seg.lock.lock();
+        try {
+            Node[] table = seg.table;
+            int index = hash & (table.length - 1);
+            for (Node trav = table[index]; trav != null; trav = trav.next) {
+                if (trav.hash == hash && key.equals(trav.key)) {
+                    trav.values.insert(value);
+                    return true;
+                }
+            }
+            table[index] = new Node(key, hash, value, table[index]);
+            seg.numKeys++;
+            numKeys.increment();
+            if (seg.numKeys > maxLoad * table.length) {
+                rehash(seg, 2 * table.length);
+            }
+            return true;
+        } finally {
+            seg.lock.unlock();
+        }
+    }
+
+    /*
+     * search - search for the specified key and return a copy of the
+     * associated collection of values, or null if the key is not
+     * in the table
+     */
+    public Queue<Object> search(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        seg.lock.lock();
+        try {
+            Node[] table = seg.table;
+            for (Node trav = table[hash & (table.length - 1)]; trav != null; trav = trav.next) {
+                if (trav.hash == hash && key.equals(trav.key)) {
+                    return copyOf(trav.values);
+                }
+            }
+            return null;
+        } finally {
+            seg.lock.unlock();
+        }
+    }
+
+    /*
+     * remove - remove from the table the entry for the specified key
+     * and return the associated collection of values, or null if the key
+     * is not in the table
+     */
+    public Queue<Object> remove(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hash = hash(key);
+        Segment seg = segmentFor(hash);
+        seg.lock.lock();
+        try {
+            Node[] table = seg.table;
+            int index = hash & (table.length - 1);
+            Node prev = null;
+            for (Node trav = table[index]; trav != null; trav = trav.next) {
+                if (trav.hash == hash && key.equals(trav.key)) {
+                    if (prev == null) {
+                        table[index] = trav.next;
+                    } else {
+                        prev.next = trav.next;
+                    }
+                    seg.numKeys--;
+                    numKeys.decrement();
+                    return trav.values;
+                }
+                prev = trav;
+            }
+            return null;
+        } finally {
+            seg.lock.unlock();
+        }
+    }
+
+    /* returns a new queue with the same items as the specified one */
+    private static ArrayQueue<Object> copyOf(ArrayQueue<Object> values) {
+        ArrayQueue<Object> copy = new ArrayQueue<Object>();
+        copy.insertAll(values);
+        return copy;
+    }
+
+    /*
+     * getNumKeys - returns the number of keys in the table. While other
+     * threads are inserting or removing keys, the result is an estimate.
+     */
+    public int getNumKeys() {
+        return numKeys.intValue();
+    }
+
+    /*
+     * load - returns the number of keys in the table divided by the
+     * total number of buckets.
+     */
+    public double load() {
+        long buckets = 0;
+        for (Segment seg : segments) {
+            buckets += seg.table.length;
+        }
+        return (double) numKeys.sum() / buckets;
+    }
+
+    /*
+     * resize - grows the table to have at least the specified total
+     * number of buckets. The segments are rehashed one at a time, so
+     * threads using the other segments are not held up.
+     */
+    public void resize(int size) {
+        int segmentSize = powerOfTwoAtLeast((size + segments.length - 1) / segments.length);
+        for (Segment seg : segments) {
+            seg.lock.lock();
+            try {
+                if (segmentSize > seg.table.length) {
+                    rehash(seg, segmentSize);
+                }
+            } finally {
+                seg.lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * rehash - moves the nodes of the specified segment into a new bucket
+     * array of the specified size. The caller must hold the segment's lock.
+     */
+    private static void rehash(Segment seg, int size) {
+        Node[] oldTable = seg.table;
+        Node[] newTable = new Node[size];
+        for (int i = 0; i < oldTable.length; i++) {
+            Node trav = oldTable[i];
+            while (trav != null) {
+                Node next = trav.next;
+                int index = trav.hash & (size - 1);
+                trav.next = newTable[index];
+                newTable[index] = trav;
+                trav = next;
+            }
+        }
+        seg.table = newTable;
+    }
+
+    /*
+     * Correctness check, then throughput test: first checks the results
+     * of 8 threads inserting, searching and removing at once in a table
+     * small enough that its segments grow during the check, and then
+     * compares this table with a globally locked ChainedHashTable at 1
+     * to 64 threads. An optional argument gives the number of
+     * milliseconds to run each configuration.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long millis = (args.length > 0) ? Long.parseLong(args[0]) : 500;
+        int numKeys = 100000;
+
+        System.out.println("(1) Testing concurrent inserts, searches and removes");
+        int errors = ConcurrentHarness.checkTable(new ConcurrentChainedHashTable(16), 8, 20000);
+        System.out.println("wrong results: " + errors);
+        System.out.print("MATCHES EXPECTED RESULTS?: ");
+        System.out.println(errors == 0);
+        System.out.println();
+
+        System.out.println("threads   global lock (ops/ms)   striped (ops/ms)");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            HashTable locked = new ConcurrentHarness.LockedTable(
+                new ChainedHashTable(1024, DEFAULT_MAX_LOAD));
+            HashTable striped = new ConcurrentChainedHashTable(1024);
+            for (int i = 0; i < numKeys; i += 2) {
+                locked.insert(i, i);
+                striped.insert(i, i);
+            }
+            double lockedOps = ConcurrentHarness.tableThroughput(locked, 0.2, threads,
+                                                                 numKeys, millis);
+            double stripedOps = ConcurrentHarness.tableThroughput(striped, 0.2, threads,
+                                                                  numKeys, millis);
+            System.out.printf("%7d   %20.0f   %16.0f%n", threads, lockedOps, stripedOps);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * ConcurrentHarness.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Code shared by the main methods of the concurrent tables and queues:
+ * the globally locked baselines that they are compared against, the
+ * loop that measures how many operations a number of threads complete
+ * in a given time, and checks that a table or a queue gives correct
+ * results when threads use it at once.
+ */
+class ConcurrentHarness {
+    /*
+     * Nested class for a table with one lock around every operation of
+     * the table that it wraps.
+     */
+    static class LockedTable implements HashTable {
+        private final HashTable table;
+
+        LockedTable(HashTable table) {
+            this.table = table;
+        }
+
+        public synchronized boolean insert(Object key, Object value) {
+            return table.insert(key, value);
+        }
+
+        public synchronized Queue<Object> search(Object key) {
+            return table.search(key);
+        }
+
+        public synchronized Queue<Object> remove(Object key) {
+            return table.remove(key);
+        }
+    }
+
+    /*
+     * Nested class for an LLQueue with one lock around every operation.
+     * Its iterator visits a copy of the items taken under the lock.
+     */
+    static class LockedQueue<T> implements Queue<T> {
+        private final LLQueue<T> queue = new LLQueue<T>();
+
+        public synchronized boolean insert(T item) {
+            return queue.insert(item);
+        }
+
+        public synchronized T remove() {
+            return queue.remove();
+        }
+
+        public synchronized T peek() {
+            return queue.peek();
+        }
+
+        public synchronized boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        public boolean isFull() {
+            return false;
+        }
+
+        public synchronized int size() {
+            return queue.size();
+        }
+
+        public synchronized Iterator<T> iterator() {
+            ArrayQueue<T> copy = new ArrayQueue<T>();
+            copy.insertAll(queue);
+            return copy.iterator();
+        }
+    }
+
+    /* the work that a thread repeats during a throughput test */
+    private interface Step {
+        void run(ThreadLocalRandom rand);
+    }
+
+    /*
+     * throughput - runs the specified number of threads, each repeating
+     * step for the specified number of milliseconds, and returns the
+     * total number of operations per millisecond, counting each step as
+     * opsPerStep operations.
+     */
+    private static double throughput(final Step step, final int opsPerStep,
+                                     int numThreads, long millis)
+        throws InterruptedException
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final LongAdder ops = new LongAdder();
+        final long[] deadline = new long[1];
+        Thread[] threads = new Thread[numThreads];
+
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    ThreadLocalRandom rand = ThreadLocalRandom.current();
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long count = 0;
+                    while ((count & 255) != 0 || System.nanoTime() < deadline[0]) {
+                        step.run(rand);
+                        count++;
+                    }
+                    ops.add(count * opsPerStep);
+                }
+            });
+            threads[t].start();
+        }
+
+        deadline[0] = System.nanoTime() + millis * 1000000L;
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (double) ops.sum() / millis;
+    }
+
+    /*
+     * tableThroughput - runs the specified number of threads against the
+     * table for the specified number of milliseconds, with Integer keys
+     * below numKeys, and returns the total number of operations per
+     * millisecond. Inserts and removes each make up half of writeFraction
+     * of the operations, and searches the rest.
+     */
+    static double tableThroughput(final HashTable table, final double writeFraction,
+                                  int numThreads, final int numKeys, long millis)
+        throws InterruptedException
+    {
+        Step step = new Step() {
+            public void run(ThreadLocalRandom rand) {
+                Integer key = rand.nextInt(numKeys);
+                double op = rand.nextDouble();
+                if (op < writeFraction / 2) {
+                    table.insert(key, key);
+                } else if (op < writeFraction) {
+                    table.remove(key);
+                } else {
+                    table.search(key);
+                }
+            }
+        };
+        return throughput(step, 1, numThreads, millis);
+    }
+
+    /*
+     * queueThroughput - runs the specified number of threads against the
+     * queue for the specified number of milliseconds, each of them
+     * inserting an item and then removing one, and returns the total
+     * number of operations per millisecond.
+     */
+    static double queueThroughput(final Queue<Integer> queue, int numThreads, long millis)
+        throws InterruptedException
+    {
+        final Integer item = 112;
+        Step step = new Step() {
+            public void run(ThreadLocalRandom rand) {
+                queue.insert(item);
+                queue.remove();
+            }
+        };
+        return throughput(step, 2, numThreads, millis);
+    }
+
+    /*
+     * hasValues - returns true if the specified queue holds exactly the
+     * values key and -key, in that order
+     */
+    private static boolean hasValues(Queue<Object> values, int key) {
+        if (values == null || values.size() != 2) {
+            return false;
+        }
+        Iterator<Object> iter = values.iterator();
+        return iter.next().equals(key) && iter.next().equals(-key);
+    }
+
+    /*
+     * checkTable - runs numThreads writer threads against the empty table
+     * at once, together with a reader thread, and returns the number of
+     * wrong results seen. Writer t owns the keys t, t + numThreads,
+     * t + 2*numThreads, and so on; for each key k it inserts the values
+     * k and -k, and then removes every third key, checking the values
+     * that remove returns. The reader searches for keys as they are
+     * written and checks that a key's values are a prefix of k, -k.
+     * Finally every key is searched for once the threads are done.
+     */
+    static int checkTable(final HashTable table, final int numThreads,
+                          final int keysPerThread)
+        throws InterruptedException
+    {
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final int numKeys = numThreads * keysPerThread;
+        Thread[] writers = new Thread[numThreads];
+
+        for (int t = 0; t < numThreads; t++) {
+            final int first = t;
+            writers[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int k = first; k < numKeys; k += numThreads) {
+                        table.insert(k, k);
+                        table.insert(k, -k);
+                        if (k % 3 == 0 && !hasValues(table.remove(k), k)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                ThreadLocalRandom rand = ThreadLocalRandom.current();
+                while (!done.get()) {
+                    int k = rand.nextInt(numKeys);
+                    Queue<Object> values = table.search(k);
+                    if (values == null) {
+                        continue;
+                    }
+                    Iterator<Object> iter = values.iterator();
+                    if (!iter.hasNext() || !iter.next().equals(k)
+                        || (iter.hasNext() && !iter.next().equals(-k))) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        reader.start();
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        reader.join();
+
+        for (int k = 0; k < numKeys; k++) {
+            Queue<Object> values = table.search(k);
+            if ((k % 3 == 0) ? values != null : !hasValues(values, k)) {
+                errors.incrementAndGet();
+            }
+        }
+        return errors.get();
+    }
+
+    /*
+     * checkQueue - runs numThreads producer threads and numThreads
+     * consumer threads against the empty queue at once, and returns the
+     * number of wrong results seen. Producer p inserts the items
+     * p*itemsPerProducer up to (p+1)*itemsPerProducer - 1 in increasing
+     * order, retrying while the queue is full; the consumers remove
+     * items until all of them have come out. Each item must come out
+     * exactly once, and each consumer must see the items of any one
+     * producer in the order in which they went in.
+     */
+    static int checkQueue(final Queue<Integer> queue, final int numThreads,
+                          final int itemsPerProducer)
+        throws InterruptedException
+    {
+        final int numItems = numThreads * itemsPerProducer;
+        final AtomicIntegerArray timesSeen = new AtomicIntegerArray(numItems);
+        final AtomicInteger numRemoved = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[2 * numThreads];
+
+        for (int p = 0; p < numThreads; p++) {
+            final int first = p * itemsPerProducer;
+            threads[p] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = first; i < first + itemsPerProducer; i++) {
+                        while (!queue.insert(i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+        }
+        for (int c = 0; c < numThreads; c++) {
+            threads[numThreads + c] = new Thread(new Runnable() {
+                public void run() {
+                    int[] last = new int[numThreads];     // last item seen per producer
+                    java.util.Arrays.fill(last, -1);
+                    while (numRemoved.get() < numItems) {
+                        Integer item = queue.remove();
+                        if (item == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        numRemoved.incrementAndGet();
+                        int producer = item / itemsPerProducer;
+                        if (timesSeen.incrementAndGet(item) != 1 || item <= last[producer]) {
+                            errors.incrementAndGet();
+                        }
+                        last[producer] = item;
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < numItems; i++) {
+            if (timesSeen.get(i) != 1) {
+                errors.incrementAndGet();
+            }
+        }
+        if (!queue.isEmpty()) {
+            errors.incrementAndGet();
+        }
+        return errors.get();
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ * ConcurrentOpenHashTable.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A thread-safe hash table that uses open addressing with linear probing,
+ * in which no operation takes a lock on the table.
+ *
+ * Each cell has a key and a value, each in an AtomicReferenceArray. An
+ * insert claims an empty cell by changing its key from null with a
+ * compare-and-set (CAS), and a key stays in its cell for the life of the
+ * array, so a probe sequence is never cut short. The value of a cell is
+ * null (the key's insert hasn't finished), a Values holder, or REMOVED;
+ * remove CASes the holder to REMOVED, and inserting the key again CASes
+ * a new holder into the same cell.
+ *
+ * When the claimed cells pass maxLoad of an array, a new array is made
+ * (twice as big, unless most claimed cells are REMOVED) and every thread
+ * that uses the table helps to copy it: each claims a chunk of cells
+ * through transferIndex and copies them. Copying a cell first freezes
+ * its value (wraps it in a Frozen), so that no thread can change it in
+ * the old array, then copies the key and holder to the new array, and
+ * finally marks the cell MOVED. An operation that meets a Frozen or MOVED
+ * cell finishes the copy of that cell and carries on in the new array.
+ * Empty cells are marked with the key MOVED_KEY, so no insert can claim
+ * them once they have been passed.
+ *
+ * The values of a key are kept in a Values holder, a Queue that many
+ * threads can use at once. search returns the holder itself.
+ */
+public class ConcurrentOpenHashTable implements HashTable {
+    /*
+     * Private inner class for the values of a key: a queue that threads
+     * can add to and remove from at the same time. Once the key has been
+     * removed from the table, the holder is closed, and insert fails, so
+     * that a value added by a racing insert is not lost.
+     */
+    private static class Values implements Queue<Object> {
+        private final ConcurrentLinkedQueue<Object> items;
+        private boolean closed;        // guarded by this
+
+        private Values(Object value) {
+            items = new ConcurrentLinkedQueue<Object>();
+            items.add(value);
+            closed = false;
+        }
+
+        public boolean insert(Object item) {
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                items.add(item);
+                return true;
+            }
+        }
+
+        private void close() {
+            synchronized (this) {
+                closed = true;
+            }
+        }
+
+        public Object remove() {
+            return items.poll();
+        }
+
+        public Object peek() {
+            return items.peek();
+        }
+
+        public boolean isEmpty() {
+            return items.isEmpty();
+        }
+
+        public boolean isFull() {
+            return false;
+        }
+
+        public int size() {
+            return items.size();
+        }
+
+        public Iterator<Object> iterator() {
+            return items.iterator();
+        }
+
+        public String toString() {
+            String str = "{";
+            Iterator<Object> iter = items.iterator();
+            while (iter.hasNext()) {
+                str = str + iter.next();
+                if (iter.hasNext()) {
+                    str = str + ", ";
+                }
+            }
+            return str + "}";
+        }
+    }
+
+    /* Private inner class for a value that is being copied to the next array */
+    private static class Frozen {
+        private final Object value;
+
+        private Frozen(Object value) {
+            this.value = value;
+        }
+    }
+
+    /* Private inner class for one array of cells */
+    private static class Table {
+        private final AtomicReferenceArray<Object> keys;
+        private final AtomicReferenceArray<Object> values;
+        private final int length;
+        private final AtomicInteger claimed;        // cells with a key
+        private final AtomicReference<Table> next;  // the array being copied into
+        private final AtomicInteger transferIndex;  // the next chunk to copy
+        private final AtomicInteger copied;         // cells known to be copied
+        private volatile boolean done;              // true when all are copied
+
+        private Table(int length) {
+            keys = new AtomicReferenceArray<Object>(length);
+            values = new AtomicReferenceArray<Object>(length);
+            this.length = length;
+            claimed = new AtomicInteger();
+            next = new AtomicReference<Table>();
+            transferIndex = new AtomicInteger();
+            copied = new AtomicInteger();
+            done = false;
+        }
+    }
+
+    // markers in the cells
+    private static final Object REMOVED = new Object();    // value of a removed key
+    private static final Object MOVED = new Object();      // value of a copied cell
+    private static final Object MOVED_KEY = new Object();  // key of a copied empty cell
+
+    // the number of cells a thread copies at a time during a resize
+    private static final int CHUNK = 64;
+
+    // the default load factor (of claimed cells) that triggers a resize
+    public static final double DEFAULT_MAX_LOAD = 0.75;
+
+    private final AtomicReference<Table> current;
+    private final LongAdder numKeys;
+    private final double maxLoad;
+
+    public ConcurrentOpenHashTable(int size) {
+        this(size, DEFAULT_MAX_LOAD);
+    }
+
+    /*
+     * Constructor for a table with at least the specified number of cells,
+     * rounded up to a power of two, that is resized whenever the claimed
+     * cells pass maxLoad of its size.
+     */
+    public ConcurrentOpenHashTable(int size, double maxLoad) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        if (!(maxLoad > 0 && maxLoad < 1)) {
+            throw new IllegalArgumentException("invalid maxLoad: " + maxLoad);
+        }
+
+        int length = 2;
+        while (length < size) {
+            length *= 2;
+        }
+        current = new AtomicReference<Table>(new Table(length));
+        numKeys = new LongAdder();
+        this.maxLoad = maxLoad;
+    }
+
+    /*
+     * hash - mixes the bits of the key's hash code, so that the low bits
+     * that pick a cell depend on all of them.
+     */
+    private static int hash(Object key) {
+        return HashStrategy.MURMUR3.hash(key);
+    }
+
+    /*
+     * insert - insert the specified (key, value) pair in the hash table.
+     * Always returns true, because the table grows as needed.
+     */
+    public boolean insert(Object key, Object value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+        Table t = current.get();
+        helpResize(t);
+        insert(t, key, hash(key), value);
+        return true;
+    }
+
+    /*
+     * insert - does the work of insert, starting in array t, for a key
+     * with the specified hash.
+     */
+    private void insert(Table t, Object key, int hash, Object value) {
+        while (true) {
+            int i = claimCell(t, key, hash);
+            if (i == -1) {
+                // the cell is already copied, or the array is full
+                t = nextTable(t);
+                continue;
+            }
+
+            Object v = t.values.get(i);
+            if (v instanceof Values) {
+                if (((Values) v).insert(value)) {
+                    return;
+                }
+                // the holder was closed by a remove; try again
+            } else if (v == null || v == REMOVED) {
+                if (t.values.compareAndSet(i, v, new Values(value))) {
+                    numKeys.increment();
+                    return;
+                }
+            } else {
+                // Frozen or MOVED: finish copying the cell and move on
+                copyCell(t, i);
+                t = t.next.get();
+            }
+        }
+    }
+
+    /*
+     * claimCell - returns the index of the cell of t that holds the
+     * specified key, claiming an empty cell for it if the key isn't there.
+     * Returns -1 if the probe reaches a cell that has been copied to the
+     * next array, or if there is no empty cell.
+     */
+    private int claimCell(Table t, Object key, int hash) {
+        int mask = t.length - 1;
+        int i = hash & mask;
+        for (int probes = 0; probes < t.length; probes++) {
+            Object k = t.keys.get(i);
+            if (k == null) {
+                if (t.keys.compareAndSet(i, null, key)) {
+                    if (t.claimed.incrementAndGet() > maxLoad * t.length) {
+                        startResize(t);
+                    }
+                    return i;
+                }
+                k = t.keys.get(i);
+            }
+            if (k == MOVED_KEY) {
+                return -1;
+            }
+            if (k == key || key.equals(k)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        startResize(t);
+        return -1;
+    }
+
+    /*
+     * findCell - returns the index of the cell of t that holds the
+     * specified key, -1 if the key isn't in t, or -2 if the probe reached
+     * a cell that has been copied to the next array.
+     */
+    private static int findCell(Table t, Object key, int hash) {
+        int mask = t.length - 1;
+        int i = hash & mask;
+        for (int probes = 0; probes < t.length; probes++) {
+            Object k = t.keys.get(i);
+            if (k == null) {
+                return -1;
+            }
+            if (k == MOVED_KEY) {
+                return -2;
+            }
+            if (k == key || key.equals(k)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return (t.next.get() != null) ? -2 : -1;
+    }
+
+    /*
+     * search - search for the specified key and return the
+     * associated collection of values, or null if the key
+     * is not in the table. Never blocks.
+     */
+    public Queue<Object> search(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hash = hash(key);
+        Table t = current.get();
+        while (true) {
+            int i = findCell(t, key, hash);
+            if (i == -1) {
+                return null;
+            } else if (i == -2) {
+                t = t.next.get();
+                continue;
+            }
+
+            Object v = t.values.get(i);
+            if (v instanceof Values) {
+                return (Values) v;
+            } else if (v == null || v == REMOVED) {
+                return null;
+            }
+            copyCell(t, i);
+            t = t.next.get();
+        }
+    }
+
+    /*
+     * remove - remove from the table the entry for the specified key
+     * and return the associated collection of values, or null if the key
+     * is not in the table
+     */
+    public Queue<Object> remove(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hash = hash(key);
+        Table t = current.get();
+        helpResize(t);
+        while (true) {
+            int i = findCell(t, key, hash);
+            if (i == -1) {
+                return null;
+            } else if (i == -2) {
+                t = t.next.get();
+                continue;
+            }
+
+            Object v = t.values.get(i);
+            if (v instanceof Values) {
+                if (t.values.compareAndSet(i, v, REMOVED)) {
+                    Values removedVals = (Values) v;
+                    removedVals.close();
+                    numKeys.decrement();
+                    return removedVals;
+                }
+            } else if (v == null || v == REMOVED) {
+                return null;
+            } else {
+                copyCell(t, i);
+                t = t.next.get();
+            }
+        }
+    }
+
+    /*
+     * startResize - makes the array that t is to be copied into, unless
+     * another thread already has. It is twice as big as t, unless at most
+     * half of t's claimed cells hold live keys, in which case it is the
+     * same size, which just clears out the removed keys.
+     */
+    private void startResize(Table t) {
+        if (t.next.get() != null) {
+            return;
+        }
+        int length = t.length;
+        if (numKeys.sum() * 2 > t.claimed.get()) {
+            length *= 2;
+        }
+        t.next.compareAndSet(null, new Table(length));
+    }
+
+    /*
+     * nextTable - returns the array that t is being copied into, starting
+     * a resize if there is none yet.
+     */
+    private Table nextTable(Table t) {
+        startResize(t);
+        return t.next.get();
+    }
+
+    /*
+     * helpResize - if t is being copied, copies one chunk of its cells,
+     * and makes the next array current once all of them are copied.
+     */
+    private void helpResize(Table t) {
+        if (t.next.get() == null || t.done) {
+            return;
+        }
+        int start = t.transferIndex.getAndAdd(CHUNK);
+        if (start >= t.length) {
+            return;
+        }
+        int end = Math.min(start + CHUNK, t.length);
+        for (int i = start; i < end; i++) {
+            copyCell(t, i);
+        }
+        if (t.copied.addAndGet(end - start) == t.length) {
+            t.done = true;
+            promote();
+        }
+    }
+
+    /*
+     * promote - replaces the current array with the one it was copied
+     * into, for as long as the current one is completely copied.
+     */
+    private void promote() {
+        Table t = current.get();
+        while (t.done) {
+            current.compareAndSet(t, t.next.get());
+            t = current.get();
+        }
+    }
+
+    /*
+     * copyCell - copies cell i of t to the next array, if it hasn't been
+     * copied already. Any number of threads can copy the same cell at
+     * once; each step is a CAS that only one of them wins.
+     */
+    private void copyCell(Table t, int i) {
+        Object k = t.keys.get(i);
+        while (k == null) {
+            if (t.keys.compareAndSet(i, null, MOVED_KEY)) {
+                return;
+            }
+            k = t.keys.get(i);
+        }
+        if (k == MOVED_KEY) {
+            return;
+        }
+
+        while (true) {
+            Object v = t.values.get(i);
+            if (v == MOVED) {
+                return;
+            }
+            Frozen f;
+            if (v instanceof Frozen) {
+                f = (Frozen) v;
+            } else {
+                f = new Frozen(v);
+                if (!t.values.compareAndSet(i, v, f)) {
+                    continue;
+                }
+            }
+            if (f.value instanceof Values) {
+                copyInto(t.next.get(), k, hash(k), (Values) f.value);
+            }
+            t.values.compareAndSet(i, f, MOVED);
+            return;
+        }
+    }
+
+    /*
+     * copyInto - puts the specified key and holder into array t (or the
+     * array after it, if t is being copied too), unless the key already
+     * has a value there.
+     */
+    private void copyInto(Table t, Object key, int hash, Values holder) {
+        while (true) {
+            int i = claimCell(t, key, hash);
+            if (i == -1) {
+                t = nextTable(t);
+                continue;
+            }
+            Object v = t.values.get(i);
+            if (v == null) {
+                if (t.values.compareAndSet(i, null, holder)) {
+                    return;
+                }
+            } else if (v instanceof Frozen || v == MOVED) {
+                copyCell(t, i);
+                t = t.next.get();
+            } else {
+                // another thread copied the key here first
+                return;
+            }
+        }
+    }
+
+    /*
+     * getNumKeys - returns the number of keys in the table. While other
+     * threads are inserting or removing keys, the result is an estimate.
+     */
+    public int getNumKeys() {
+        return numKeys.intValue();
+    }
+
+    /*
+     * load - returns the number of keys in the table divided by the
+     * number of cells in the current array.
+     */
+    public double load() {
+        return (double) numKeys.sum() / current.get().length;
+    }
+
+    /*
+     * Self-tests, then a throughput test: first checks the results of 
+     * one thread, and then of 8 threads at once, in tables small enough
+     * that they are resized many times during the check. Then compares
+     * this table with a globally locked OpenHashTable on a 95/5 
+     * read/write mix at 1 to 64 threads. An optional argument gives the
+     * number of milliseconds to run each configuration.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long millis = (args.length > 0) ? Long.parseLong(args[0]) : 500;
+        int numKeys = 100000;
+
+        System.out.println("(1.1) Testing on insert, search and remove in one thread");
+        try {
+            ConcurrentOpenHashTable table = new ConcurrentOpenHashTable(4);
+            for (int k = 0; k < 200; k++) {
+                table.insert(k, "v" + k);
+            }
+            table.insert(5, "w5");
+            Queue<Object> removedVals = table.remove(9);
+            String results = table.search(5) + " " + removedVals + " " + table.search(9) 
+                             + " " + table.remove(9) + " ";
+            // the holder of a removed key is closed, and inserting the
+            // key again gives it a new one in the same cell
+            results += removedVals.insert("x") + " ";
+            table.insert(9, "y9");
+            for (int k = 12; k < 200; k += 3) {
+                table.remove(k);
+            }
+            boolean ok = true;
+            for (int k = 10; k < 200; k++) {
+                Queue<Object> vals = table.search(k);
+                if (k % 3 == 0) {
+                    ok = ok && vals == null;
+                } else {
+                    ok = ok && vals != null && vals.toString().equals("{v" + k + "}");
+                }
+            }
+            results += table.search(9) + " " + removedVals + " " + table.getNumKeys() 
+                       + " " + ok;
+            String expected = "{v5, w5} {v9} null null false {y9} {v9} 137 true";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+
+        System.out.println("(1.2) Testing on concurrent inserts, searches and removes");
+        try {
+            // starting at 16 cells, the array is copied over and over,
+            // with every thread helping
+            int errors = ConcurrentHarness.checkTable(new ConcurrentOpenHashTable(16), 8, 20000);
+            System.out.println("wrong results: " + errors);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(errors == 0);
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+
+        System.out.println("threads   global lock (ops/ms)   CAS (ops/ms)");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            HashTable locked = new ConcurrentHarness.LockedTable(
+                new OpenHashTable(1024, OpenHashTable.LINEAR,
+                                  OpenHashTable.DEFAULT_MAX_LOAD, HashStrategy.MURMUR3));
+            HashTable cas = new ConcurrentOpenHashTable(1024);
+            for (int i = 0; i < numKeys; i += 2) {
+                locked.insert(i, i);
+                cas.insert(i, i);
+            }
+            double lockedOps = ConcurrentHarness.tableThroughput(locked, 0.05, threads,
+                                                                 numKeys, millis);
+            double casOps = ConcurrentHarness.tableThroughput(cas, 0.05, threads,
+                                                              numKeys, millis);
+            System.out.printf("%7d   %20.0f   %12.0f%n", threads, lockedOps, casOps);
+        }
+    }
+}
@@ -0,0 +1,564 @@
+/*
+ * CuckooHashTable.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.Random;
+
+/*
+ * A class that implements a hash table using bucketized cuckoo hashing.
+ *
+ * The table is divided into buckets of SLOTS cells, and each key can live
+ * in only two of them: the buckets picked by two independent hash
+ * functions (b1 and b2). A search therefore looks at no more than
+ * 2 * SLOTS cells plus a small stash, however full the table is and
+ * whatever keys have come and gone before.
+ *
+ * Insert puts a new key into a free cell of either of its buckets. If
+ * both are full, it evicts a random key from one of them and moves that
+ * key to its other bucket, which may evict another key, and so on. The
+ * eviction path is limited to MAX_KICKS moves. A key that is still left
+ * without a cell goes into the stash, and if the stash is full too, the
+ * whole table is rehashed with new hash functions (and twice the buckets,
+ * if it is fuller than maxLoad).
+ *
+ * Like the other tables, a key can have any number of values, which are
+ * kept in a queue in the key's entry.
+ *
+ * Keys with equal hash codes always share the same two buckets, whatever
+ * the hash functions, so at most 2 * SLOTS keys can have the same hash
+ * code; insert throws an IllegalStateException for one more.
+ */
+public class CuckooHashTable implements HashTable {
+    /* Private inner class for an entry in the hash table */
+    private static class Entry {
+        private Object key;
+        private int hashCode;              // key.hashCode(), computed once
+        private ArrayQueue<Object> values;    // all of the values with this key
+
+        private Entry(Object key, int hashCode, Object value) {
+            this.key = key;
+            this.hashCode = hashCode;
+            values = new ArrayQueue<Object>();
+            values.insert(value);
+        }
+    }
+
+    // the number of cells in a bucket
+    public static final int SLOTS = 4;
+
+    // the number of entries the stash can hold
+    private static final int STASH_SIZE = 4;
+
+    // the maximum number of evictions per insert
+    private static final int MAX_KICKS = 128;
+
+    // the default load factor above which the table doubles
+    public static final double DEFAULT_MAX_LOAD = 0.9;
+
+    private Entry[] table;     // bucket b is table[b*SLOTS .. b*SLOTS + SLOTS-1]
+    private int[] hashes;      // hashes[i] is table[i].hashCode, so that a search
+                               // reads an entry only when its hash code matches
+    private int numBuckets;    // always a power of two
+    private Entry[] stash;
+    private int numStashed;
+    private int numKeys;
+    private double maxLoad;
+
+    private int seed1;         // the seeds of the two hash functions
+    private int seed2;
+    private Random rand;       // picks victims and new seeds
+
+    public CuckooHashTable(int size) {
+        this(size, DEFAULT_MAX_LOAD);
+    }
+
+    /*
+     * Constructor for a table with room for at least the specified number
+     * of keys, which doubles in size whenever its load factor passes
+     * maxLoad.
+     */
+    public CuckooHashTable(int size, double maxLoad) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        if (!(maxLoad > 0 && maxLoad < 1)) {
+            throw new IllegalArgumentException("invalid maxLoad: " + maxLoad);
+        }
+
+        numBuckets = 2;
+        while (numBuckets * SLOTS < size) {
+            numBuckets *= 2;
+        }
+        table = new Entry[numBuckets * SLOTS];
+        hashes = new int[numBuckets * SLOTS];
+        stash = new Entry[STASH_SIZE];
+        numStashed = 0;
+        numKeys = 0;
+        this.maxLoad = maxLoad;
+        rand = new Random(0x5eed);
+        seed1 = rand.nextInt();
+        seed2 = rand.nextInt();
+    }
+
+    /*
+     * mix - mixes the bits of a hash code with a seed (with the finalizer
+     * of MurmurHash3), so that different seeds give independent results.
+     */
+    private static int mix(int hashCode, int seed) {
+        int h = hashCode ^ seed;
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        h *= 0xc2b2ae35;
+        h ^= (h >>> 16);
+        return h;
+    }
+
+    /* the two hash functions: each returns the first cell of a bucket */
+    private int b1(int hashCode) {
+        return (mix(hashCode, seed1) & (numBuckets - 1)) * SLOTS;
+    }
+
+    private int b2(int hashCode) {
+        return (mix(hashCode, seed2) & (numBuckets - 1)) * SLOTS;
+    }
+
+    /*
+     * findCell - returns the index in table of the entry for the specified
+     * key, or -1 if it isn't in either of its buckets.
+     */
+    private int findCell(Object key, int hashCode) {
+        int b = b1(hashCode);
+        for (int i = b; i < b + SLOTS; i++) {
+            if (hashes[i] == hashCode && table[i] != null && key.equals(table[i].key)) {
+                return i;
+            }
+        }
+        b = b2(hashCode);
+        for (int i = b; i < b + SLOTS; i++) {
+            if (hashes[i] == hashCode && table[i] != null && key.equals(table[i].key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * findStashed - returns the index in the stash of the entry for the
+     * specified key, or -1 if it isn't there.
+     */
+    private int findStashed(Object key, int hashCode) {
+        for (int i = 0; i < numStashed; i++) {
+            if (stash[i].hashCode == hashCode && key.equals(stash[i].key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* puts the specified entry in cell i */
+    private void setCell(int i, Entry e) {
+        table[i] = e;
+        hashes[i] = e.hashCode;
+    }
+
+    /*
+     * freeCell - returns the index of an empty cell in the bucket that
+     * starts at b, or -1 if the bucket is full.
+     */
+    private int freeCell(int b) {
+        for (int i = b; i < b + SLOTS; i++) {
+            if (table[i] == null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * insert - insert the specified (key, value) pair in the hash table.
+     * Always returns true, because the table grows as needed.
+     */
+    public boolean insert(Object key, Object value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hashCode = key.hashCode();
+        int i = findCell(key, hashCode);
+        if (i != -1) {
+            table[i].values.insert(value);
+            return true;
+        }
+        i = findStashed(key, hashCode);
+        if (i != -1) {
+            stash[i].values.insert(value);
+            return true;
+        }
+
+        if (countEqualHashes(hashCode) >= 2 * SLOTS) {
+            throw new IllegalStateException("too many keys with hash code " + hashCode);
+        }
+
+        numKeys++;
+        if (numKeys > maxLoad * table.length) {
+            rehash(2 * numBuckets, null);
+        }
+        Entry homeless = place(new Entry(key, hashCode, value));
+        if (homeless != null) {
+            if (numStashed < STASH_SIZE) {
+                stash[numStashed++] = homeless;
+            } else {
+                rehash(numBuckets, homeless);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * countEqualHashes - returns the number of keys in the table with the
+     * specified hash code, all of which are in its two buckets or the 
+     * stash.
+     */
+    private int countEqualHashes(int hashCode) {
+        int count = 0;
+        int first = b1(hashCode);
+        int second = b2(hashCode);
+        for (int i = 0; i < SLOTS; i++) {
+            if (table[first + i] != null && table[first + i].hashCode == hashCode) {
+                count++;
+            }
+            if (second != first && table[second + i] != null 
+                && table[second + i].hashCode == hashCode) {
+                count++;
+            }
+        }
+        for (int i = 0; i < numStashed; i++) {
+            if (stash[i].hashCode == hashCode) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * place - puts the specified entry, whose key isn't in the table, in
+     * one of its buckets, evicting other entries along a path of at most
+     * MAX_KICKS moves. Returns null if it succeeds, or the entry that was
+     * left without a cell at the end of the path.
+     */
+    private Entry place(Entry e) {
+        int first = b1(e.hashCode);
+        int second = b2(e.hashCode);
+        int i = freeCell(first);
+        if (i == -1) {
+            i = freeCell(second);
+        }
+        if (i != -1) {
+            setCell(i, e);
+            return null;
+        }
+
+        // both buckets are full: evict a random entry from one of them
+        // and send it to its other bucket, and so on
+        int b = rand.nextBoolean() ? first : second;
+        for (int kicks = 0; kicks < MAX_KICKS; kicks++) {
+            i = b + rand.nextInt(SLOTS);
+            Entry victim = table[i];
+            setCell(i, e);
+            e = victim;
+            b = (b == b1(e.hashCode)) ? b2(e.hashCode) : b1(e.hashCode);
+            i = freeCell(b);
+            if (i != -1) {
+                setCell(i, e);
+                return null;
+            }
+        }
+        return e;
+    }
+
+    /*
+     * rehash - moves all of the entries, together with the specified extra
+     * entry (if it is non-null), into a table of the specified number of
+     * buckets, with new hash functions. If some entry doesn't fit, it
+     * tries again with other hash functions, doubling the number of
+     * buckets after every few tries.
+     */
+    private void rehash(int buckets, Entry extra) {
+        Entry[] entries = new Entry[numKeys];
+        int n = 0;
+        for (Entry e : table) {
+            if (e != null) {
+                entries[n++] = e;
+            }
+        }
+        for (int i = 0; i < numStashed; i++) {
+            entries[n++] = stash[i];
+        }
+        if (extra != null) {
+            entries[n++] = extra;
+        }
+
+        for (int tries = 1; ; tries++) {
+            numBuckets = buckets;
+            table = new Entry[buckets * SLOTS];
+            hashes = new int[buckets * SLOTS];
+            numStashed = 0;
+            seed1 = rand.nextInt();
+            seed2 = rand.nextInt();
+
+            boolean fits = true;
+            for (int i = 0; i < n && fits; i++) {
+                Entry homeless = place(entries[i]);
+                if (homeless != null) {
+                    if (numStashed < STASH_SIZE) {
+                        stash[numStashed++] = homeless;
+                    } else {
+                        fits = false;
+                    }
+                }
+            }
+            if (fits) {
+                return;
+            }
+            if (tries % 4 == 0) {
+                buckets *= 2;
+            }
+        }
+    }
+
+    /*
+     * search - search for the specified key and return the
+     * associated collection of values, or null if the key
+     * is not in the table
+     */
+    public Queue<Object> search(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hashCode = key.hashCode();
+        int i = findCell(key, hashCode);
+        if (i != -1) {
+            return table[i].values;
+        }
+        i = findStashed(key, hashCode);
+        if (i != -1) {
+            return stash[i].values;
+        }
+        return null;
+    }
+
+    /*
+     * remove - remove from the table the entry for the specified key
+     * and return the associated collection of values, or null if the key
+     * is not in the table
+     */
+    public Queue<Object> remove(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hashCode = key.hashCode();
+        ArrayQueue<Object> removedVals;
+        int i = findCell(key, hashCode);
+        if (i != -1) {
+            removedVals = table[i].values;
+            table[i] = null;
+        } else {
+            i = findStashed(key, hashCode);
+            if (i == -1) {
+                return null;
+            }
+            removedVals = stash[i].values;
+            stash[i] = stash[--numStashed];
+            stash[numStashed] = null;
+        }
+        numKeys--;
+
+        // the freed cell may let a stashed entry back into its bucket
+        for (int j = numStashed - 1; j >= 0; j--) {
+            Entry e = stash[j];
+            int cell = freeCell(b1(e.hashCode));
+            if (cell == -1) {
+                cell = freeCell(b2(e.hashCode));
+            }
+            if (cell != -1) {
+                setCell(cell, e);
+                stash[j] = stash[--numStashed];
+                stash[numStashed] = null;
+            }
+        }
+        return removedVals;
+    }
+
+    /*
+     * getNumKeys - returns the number of keys in the table.
+     */
+    public int getNumKeys() {
+        return numKeys;
+    }
+
+    /*
+     * load - returns the number of keys in the table divided by the
+     * number of cells.
+     */
+    public double load() {
+        return (double) numKeys / table.length;
+    }
+
+    /*
+     * latencies - times each search for the specified keys on the
+     * specified table and returns the times in nanoseconds, sorted.
+     */
+    private static long[] latencies(HashTable table, Integer[] keys) {
+        long[] times = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long start = System.nanoTime();
+            table.search(keys[i]);
+            times[i] = System.nanoTime() - start;
+        }
+        java.util.Arrays.sort(times);
+        return times;
+    }
+
+    /* returns the mean of the specified values */
+    private static double mean(long[] values) {
+        double sum = 0;
+        for (long v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    /*
+     * Self-tests, then a search latency comparison: fills this table and an OpenHashTable
+     * with ROBIN_HOOD probing with the same random Integer keys, at a
+     * load of about 0.9, and reports the mean, 99.9th percentile and
+     * maximum time of successful and unsuccessful searches. An optional
+     * argument gives the number of keys.
+     */
+    public static void main(String[] args) {
+        System.out.println("(1.1) Testing on insert/search/remove");
+        try {
+            // at a maxLoad of 0.95, the inserts take long eviction paths,
+            // use the stash and rehash the table many times
+            CuckooHashTable table = new CuckooHashTable(4, 0.95);
+            for (int i = 0; i < 5000; i++) {
+                table.insert(i, "v" + i);
+            }
+            for (int i = 0; i < 5000; i += 2) {
+                table.insert(i, "w" + i);
+            }
+            boolean ok = table.load() <= 0.95;
+            for (int i = 0; i < 5000; i += 3) {
+                Queue<Object> vals = table.remove(i);
+                String expected = (i % 2 == 0) ? "{v" + i + ", w" + i + "}" : "{v" + i + "}";
+                ok = ok && vals != null && vals.toString().equals(expected);
+            }
+            for (int i = 0; i < 5000; i++) {
+                Queue<Object> vals = table.search(i);
+                if (i % 3 == 0) {
+                    ok = ok && vals == null;
+                } else {
+                    ok = ok && vals != null && vals.peek().equals("v" + i);
+                }
+            }
+            String results = table.getNumKeys() + " " + ok + " " + table.remove(5000);
+            String expected = "3333 true null";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.2) Testing on keys with equal hash codes");
+        try {
+            // "Aa" and "BB" have the same hash code, so all of these 
+            // four-pair strings do too
+            String[] keys = new String[9];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = "";
+                for (int bit = 0; bit < 4; bit++) {
+                    keys[i] += ((i >> bit) & 1) == 0 ? "Aa" : "BB";
+                }
+            }
+            CuckooHashTable table = new CuckooHashTable(64);
+            for (int i = 0; i < 2 * SLOTS; i++) {
+                table.insert(keys[i], i);
+            }
+            String results = "";
+            try {
+                table.insert(keys[8], 8);
+            } catch (IllegalStateException e) {
+                results += "full ";
+            }
+            table.remove(keys[3]);
+            table.insert(keys[8], 8);
+            for (int i = 0; i < keys.length; i++) {
+                results += table.search(keys[i]) + " ";
+            }
+            results += table.getNumKeys();
+            String expected = "full {0} {1} {2} null {4} {5} {6} {7} {8} 8";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 900000;
+
+        Random r = new Random(112);
+        java.util.HashSet<Integer> used = new java.util.HashSet<Integer>();
+        Integer[] present = new Integer[n];
+        Integer[] absent = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            do {
+                present[i] = r.nextInt();
+            } while (!used.add(present[i]));
+        }
+        for (int i = 0; i < n; i++) {
+            do {
+                absent[i] = r.nextInt();
+            } while (used.contains(absent[i]));
+        }
+
+        System.out.println("table        load   hit mean  hit p99.9   hit max"
+                           + "   miss mean  miss p99.9  miss max  (ns)");
+        for (int round = 0; round < 2; round++) {     // the first round warms up
+            CuckooHashTable cuckoo = new CuckooHashTable(n, 0.95);
+            OpenHashTable robinHood = new OpenHashTable((int) (n / 0.9),
+                                                        OpenHashTable.ROBIN_HOOD, 0.95);
+            for (int i = 0; i < n; i++) {
+                cuckoo.insert(present[i], i);
+                robinHood.insert(present[i], i);
+            }
+
+            HashTable[] tables = {cuckoo, robinHood};
+            String[] names = {"cuckoo", "robin hood"};
+            double[] loads = {cuckoo.load(), robinHood.load()};
+            for (int t = 0; t < tables.length; t++) {
+                long[] hits = latencies(tables[t], present);
+                long[] misses = latencies(tables[t], absent);
+                if (round == 1) {
+                    System.out.printf("%-11s %5.3f %10.1f %10d %9d %11.1f %11d %9d%n",
+                                      names[t], loads[t], mean(hits), hits[(int) (n * 0.999)],
+                                      hits[n - 1], mean(misses), misses[(int) (n * 0.999)],
+                                      misses[n - 1]);
+                }
+            }
+        }
+    }
+}
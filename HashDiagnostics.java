@@ -0,0 +1,222 @@
+/*
+ * HashDiagnostics.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.Random;
+
+/*
+ * A tool for judging HashStrategy objects. It measures how well a
+ * strategy mixes the bits of the hash code (its avalanche behavior) and
+ * how long the probe sequences get when a sample set of keys is put into
+ * an open-addressing table with linear probing or double hashing.
+ */
+public class HashDiagnostics {
+    /*
+     * avalancheMatrix - flips each of the 32 bits of random int keys, one
+     * at a time, and returns an array whose element [j][k] is the
+     * fraction of the flips of input bit j that flipped bit k of the
+     * hash. With a perfect mixer every element is close to 0.5.
+     */
+    public static double[][] avalancheMatrix(HashStrategy strategy, int samples) {
+        int[][] flips = new int[32][32];
+        Random rand = new Random(112);
+        for (int n = 0; n < samples; n++) {
+            int x = rand.nextInt();
+            int h = strategy.hash(x);
+            for (int j = 0; j < 32; j++) {
+                int diff = h ^ strategy.hash(x ^ (1 << j));
+                for (int k = 0; k < 32; k++) {
+                    flips[j][k] += (diff >>> k) & 1;
+                }
+            }
+        }
+
+        double[][] matrix = new double[32][32];
+        for (int j = 0; j < 32; j++) {
+            for (int k = 0; k < 32; k++) {
+                matrix[j][k] = (double) flips[j][k] / samples;
+            }
+        }
+        return matrix;
+    }
+
+    /*
+     * probeLengths - puts the specified keys, one after another, into an
+     * empty open-addressing table of the specified length, probing as
+     * the strategy directs with linear probing (if doubleHashing is
+     * false) or double hashing (if it is true). Returns an array whose
+     * element i is the number of cells examined to place keys[i], which
+     * is also the cost of a later successful search for it.
+     */
+    public static int[] probeLengths(HashStrategy strategy, Object[] keys,
+                                     int length, boolean doubleHashing) {
+        if (keys.length > length) {
+            throw new IllegalArgumentException("more keys than cells");
+        }
+
+        boolean[] used = new boolean[length];
+        int[] lengths = new int[keys.length];
+        for (int n = 0; n < keys.length; n++) {
+            int hash = strategy.hash(keys[n]);
+            int i = strategy.index(hash, length);
+            int step = doubleHashing ? strategy.step(hash, length) : 1;
+            int probes = 1;
+            while (used[i]) {
+                i = (i + step) % length;
+                probes++;
+            }
+            used[i] = true;
+            lengths[n] = probes;
+        }
+        return lengths;
+    }
+
+    /* prints the average and maximum of the specified probe lengths */
+    private static void printProbes(int[] lengths) {
+        long sum = 0;
+        int max = 0;
+        for (int len : lengths) {
+            sum += len;
+            max = Math.max(max, len);
+        }
+        System.out.printf(" %7.2f %6d", (double) sum / lengths.length, max);
+    }
+
+    /*
+     * visitsAll - returns true if the probe sequence of the specified 
+     * strategy for the specified hash, in a table of the specified 
+     * length, reaches every position before it repeats.
+     */
+    private static boolean visitsAll(HashStrategy strategy, int hash, int length) {
+        boolean[] seen = new boolean[length];
+        int i = strategy.index(hash, length);
+        int step = strategy.step(hash, length);
+        if (i < 0 || i >= length || step < 1 || (length > 1 && step >= length)) {
+            return false;
+        }
+        for (int n = 0; n < length; n++) {
+            if (seen[i]) {
+                return false;
+            }
+            seen[i] = true;
+            i = (i + step) % length;
+        }
+        return true;
+    }
+
+    /*
+     * Self-tests, then a report: for each built-in strategy and a 
+     * seeded one, the mean and worst distance from 0.5 of its avalanche
+     * matrix, and the average and maximum probe lengths of three sample
+     * key sets at a load of 0.75: consecutive Integers, Integers that 
+     * are multiples of 1024, and Strings of the form "user" + i. An 
+     * optional argument gives the table length, which defaults to 2^16
+     * (a power of two, which is the hardest case for a strategy that 
+     * doesn't mix).
+     */
+    public static void main(String[] args) {
+        System.out.println("(1.1) Testing on the built-in strategies");
+        try {
+            // IDENTITY leaves the hash code alone, the mixers don't, and
+            // the positions are in range even for negative hashes
+            HashStrategy s1 = HashStrategy.seeded(1);
+            String results = HashStrategy.IDENTITY.hash(12345) + " " 
+                             + (HashStrategy.SPREAD.hash(12345) != 12345) + " "
+                             + (HashStrategy.MURMUR3.hash(12345) != 12345) + " "
+                             + (HashStrategy.XXHASH.hash(12345) != 12345) + " "
+                             + HashStrategy.IDENTITY.index(-1, 10) + " "
+                             + HashStrategy.IDENTITY.index(Integer.MIN_VALUE, 7) + " "
+                             + (s1.hash("key") == HashStrategy.seeded(1).hash("key")) + " "
+                             + (s1.hash("key") != HashStrategy.seeded(2).hash("key")) + " "
+                             + s1 + " " + HashStrategy.SPREAD;
+            String expected = "12345 true true true 9 5 true true seeded(1) SPREAD";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+
+        System.out.println("(1.2) Testing on double-hashing steps");
+        try {
+            // the step has no factor in common with the length, so every
+            // probe sequence visits the whole table: powers of two, primes
+            // and other lengths, for hashes including the extremes
+            int[] hashes = {0, 1, -1, 112, Integer.MIN_VALUE, Integer.MAX_VALUE};
+            HashStrategy[] strategies = {HashStrategy.IDENTITY, HashStrategy.MURMUR3};
+            int numBad = 0;
+            int numChecked = 0;
+            Random rand = new Random(112);
+            for (int len = 1; len <= 300; len++) {
+                for (HashStrategy strategy : strategies) {
+                    for (int n = 0; n < hashes.length + 20; n++) {
+                        int hash = (n < hashes.length) ? hashes[n] : rand.nextInt();
+                        if (!visitsAll(strategy, strategy.hash(hash), len)) {
+                            numBad++;
+                        }
+                        numChecked++;
+                    }
+                }
+            }
+            String results = numChecked + " " + numBad;
+            String expected = "15600 0";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+
+        int length = (args.length > 0) ? Integer.parseInt(args[0]) : (1 << 16);
+        int n = (int) (length * 0.75);
+
+        Object[][] keySets = new Object[3][n];
+        for (int i = 0; i < n; i++) {
+            keySets[0][i] = i;
+            keySets[1][i] = i * 1024;
+            keySets[2][i] = "user" + i;
+        }
+
+        HashStrategy[] strategies = {HashStrategy.IDENTITY, HashStrategy.SPREAD,
+                                     HashStrategy.MURMUR3, HashStrategy.XXHASH,
+                                     HashStrategy.seeded(112)};
+
+        System.out.println("table length " + length + ", " + n + " keys; "
+                           + "probe lengths are avg max (linear, then double hashing)");
+        System.out.println();
+        System.out.printf("%-31s%30s%30s%30s%n", "", "consecutive ints", 
+                          "ints * 1024", "strings");
+        System.out.printf("%-14s %8s %7s", "strategy", "mean-dev", "max-dev");
+        for (int i = 0; i < keySets.length; i++) {
+            System.out.printf("%15s%15s", "linear", "double");
+        }
+        System.out.println();
+        for (HashStrategy strategy : strategies) {
+            double[][] matrix = avalancheMatrix(strategy, 10000);
+            double sumDev = 0;
+            double maxDev = 0;
+            for (double[] row : matrix) {
+                for (double p : row) {
+                    sumDev += Math.abs(p - 0.5);
+                    maxDev = Math.max(maxDev, Math.abs(p - 0.5));
+                }
+            }
+            System.out.printf("%-14s %8.3f %7.3f", strategy, sumDev / (32 * 32), maxDev);
+            for (Object[] keys : keySets) {
+                printProbes(probeLengths(strategy, keys, length, false));
+                printProbes(probeLengths(strategy, keys, length, true));
+            }
+            System.out.println();
+        }
+    }
+}
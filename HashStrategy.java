@@ -0,0 +1,156 @@
+/*
+ * HashStrategy.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.security.SecureRandom;
+
+/*
+ * An interface for the way a hash table turns keys into positions: a
+ * hash of the key, the first position to probe for a hash in a table of
+ * a given length, and the step between the positions probed by double
+ * hashing.
+ *
+ * The built-in strategies differ only in how they mix the bits of the
+ * key's hashCode(). Mixing cannot separate keys whose hash codes are
+ * equal, so a seeded strategy makes the positions of the keys hard to
+ * predict, but not keys with colliding hash codes.
+ */
+public interface HashStrategy {
+    /* hash - returns a hash of the specified (non-null) key */
+    int hash(Object key);
+
+    /*
+     * index - returns the first position to probe for the specified hash
+     * in a table of the specified length: a value from 0 to length - 1.
+     */
+    default int index(int hash, int length) {
+        return Math.floorMod(hash, length);
+    }
+
+    /*
+     * step - returns the step between the positions probed by double
+     * hashing for the specified hash in a table of the specified length.
+     * The step is from 1 to length - 1 and has no factor in common with
+     * the length, so the probe sequence visits every position of the
+     * table before it repeats.
+     */
+    default int step(int hash, int length) {
+        if (length <= 2) {
+            return 1;
+        }
+        // use the bits that index() depends on least
+        int step = 1 + Math.floorMod(Integer.reverse(hash), length - 1);
+        while (gcd(step, length) != 1) {
+            step = (step == length - 1) ? 1 : step + 1;
+        }
+        return step;
+    }
+
+    /* returns the greatest common divisor of two positive numbers */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    /* the key's hash code, unchanged */
+    HashStrategy IDENTITY = new HashStrategy() {
+        public int hash(Object key) {
+            return key.hashCode();
+        }
+
+        public String toString() {
+            return "IDENTITY";
+        }
+    };
+
+    /*
+     * the hash code with its high bits folded into its low bits: cheap,
+     * but not a full mixer. ChainedHashTable uses it by default for
+     * power-of-two sizes, whose masked indexing sees only the low bits;
+     * originally it took the raw hashCode() % table.length, as it still
+     * does (through IDENTITY) for other sizes.
+     */
+    HashStrategy SPREAD = new HashStrategy() {
+        public int hash(Object key) {
+            int h = key.hashCode();
+            h ^= (h >>> 16);
+            h *= 0x85ebca6b;
+            h ^= (h >>> 13);
+            return h;
+        }
+
+        public String toString() {
+            return "SPREAD";
+        }
+    };
+
+    /* the hash code passed through the 32-bit finalizer of MurmurHash3 */
+    HashStrategy MURMUR3 = new HashStrategy() {
+        public int hash(Object key) {
+            return murmur3(key.hashCode());
+        }
+
+        public String toString() {
+            return "MURMUR3";
+        }
+    };
+
+    /* the hash code passed through the final avalanche of xxHash32 */
+    HashStrategy XXHASH = new HashStrategy() {
+        public int hash(Object key) {
+            int h = key.hashCode();
+            h ^= (h >>> 15);
+            h *= 0x85ebca77;
+            h ^= (h >>> 13);
+            h *= 0xc2b2ae3d;
+            h ^= (h >>> 16);
+            return h;
+        }
+
+        public String toString() {
+            return "XXHASH";
+        }
+    };
+
+    /* the 32-bit finalizer of MurmurHash3 */
+    private static int murmur3(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        h *= 0xc2b2ae35;
+        h ^= (h >>> 16);
+        return h;
+    }
+
+    /*
+     * seeded - returns a strategy that mixes the hash code with the
+     * specified seed and then with the MurmurHash3 finalizer, so that
+     * different seeds put the same keys in unrelated positions.
+     */
+    static HashStrategy seeded(final int seed) {
+        return new HashStrategy() {
+            public int hash(Object key) {
+                return murmur3(murmur3(key.hashCode() ^ seed) + seed);
+            }
+
+            public String toString() {
+                return "seeded(" + seed + ")";
+            }
+        };
+    }
+
+    /*
+     * randomSeeded - returns a seeded strategy whose seed is chosen at
+     * random, so that someone who picks the keys can't know in advance
+     * which of them will collide in the table.
+     */
+    static HashStrategy randomSeeded() {
+        return seeded(new SecureRandom().nextInt());
+    }
+}
@@ -24,4 +24,51 @@ public interface HashTable {
      * is not in the table
      */
     Queue<Object> remove(Object key);
+    
+    /*
+     * insertAll - insert the pairs (keys[i], values[i]) in the hash table.
+     * Values for the same key are added in the order in which they appear.
+     * Returns true if all of the pairs can be added and false if there is 
+     * overflow.
+     */
+    default boolean insertAll(Object[] keys, Object[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values must have the same length");
+        }
+        boolean added = true;
+        for (int i = 0; i < keys.length; i++) {
+            if (!insert(keys[i], values[i])) {
+                added = false;
+            }
+        }
+        return added;
+    }
+    
+    /*
+     * searchAll - search for each of the specified keys and return an
+     * array whose element i is the collection of values for keys[i], or 
+     * null if that key is not in the table
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    default Queue<Object>[] searchAll(Object[] keys) {
+        Queue<Object>[] results = (Queue<Object>[]) new Queue[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            results[i] = search(keys[i]);
+        }
+        return results;
+    }
+    
+    /*
+     * removeAll - remove the entries for each of the specified keys and 
+     * return an array whose element i is the collection of values for 
+     * keys[i], or null if that key was not in the table
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    default Queue<Object>[] removeAll(Object[] keys) {
+        Queue<Object>[] results = (Queue<Object>[]) new Queue[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            results[i] = remove(keys[i]);
+        }
+        return results;
+    }
 }
\ No newline at end of file
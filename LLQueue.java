@@ -4,40 +4,86 @@
  * Computer Science 112, Boston University
  */
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /*
  * A generic class that implements our Queue interface using a linked list.
+ *
+ * The list is unrolled: each node holds a chunk of items in an array,
+ * rather than a single item, so a long queue needs one node per 
+ * CHUNK_SIZE items instead of one per item, and consecutive items sit
+ * next to each other in memory. The first node has room for 
+ * FIRST_CHUNK_SIZE items, and each node after it for twice as many as
+ * the one before, up to CHUNK_SIZE, so that a short queue doesn't pay 
+ * for slots it will never use. (A queue of one or two items still takes
+ * more memory than it would with a node per item, since its node has an
+ * array besides; main measures both.) A node's items are in
+ * items[start..end-1]; items are removed from the start of the front
+ * node and inserted at the end of the rear node. A full-size node whose
+ * items have all been removed is kept on a short free list, so that a 
+ * queue that is filled and drained over and over reuses its nodes 
+ * instead of allocating new ones.
+ *
+ * Only the front and rear nodes are usually partly filled, but
+ * spliceFrom links another queue's nodes in as they are, so any node
+ * may be.
+ *
+ * The hash tables keep each key's values in an ArrayQueue, whose items
+ * are already in a single array, so the chunks don't change how fast 
+ * their queues of values drain. They pay off for code that uses LLQueue
+ * directly, such as the locked queue that the concurrent queues are 
+ * compared against.
  */
 public class LLQueue<T> implements Queue<T> {
+    // the number of items that the first node can hold, and the most
+    // that any node can hold
+    private static final int FIRST_CHUNK_SIZE = 2;
+    private static final int CHUNK_SIZE = 32;
+
+    // the most nodes kept on the free list
+    private static final int MAX_FREE_NODES = 2;
+
     // Inner class for a node.  We use an inner class so that the LLQueue
     // methods can access the fields of the nodes.
-    private class Node {
-        private T item;
+    private static class Node {
+        private Object[] items;
+        private int start;      // the index of the node's first item
+        private int end;        // the index after the node's last item
         private Node next;
         
-        private Node(T i, Node n) {
-            item = i;
-            next = n;
+        private Node(int capacity) {
+            items = new Object[capacity];
+            start = 0;
+            end = 0;
+            next = null;
         }
     }
     
     // the fields of the LLQueue object
-    private Node front;    // the node containing the item at the front
-    private Node rear;     // the node containing the item at the rear
+    private Node front;      // the node containing the item at the front
+    private Node rear;       // the node containing the item at the rear
+    private int numItems;    // the number of items in the queue
+    private Node free;       // emptied nodes that can be reused
+    private int numFree;     // the number of nodes on the free list
     
     /*
      * Constructs an LLQueue object for a queue that is initially
-     * empty.
+     * empty. No node is allocated until the first insert.
      */
     public LLQueue() {
         front = null;
         rear = null;
+        numItems = 0;
+        free = null;
+        numFree = 0;
     }
     
     /* 
      * isEmpty - returns true if the queue is empty, and false otherwise
      */
     public boolean isEmpty() {
-        return (front == null);
+        return (numItems == 0);
     }
     
     /*
@@ -48,40 +94,92 @@ public class LLQueue<T> implements Queue<T> {
         return false;
     }
 
+    /*
+     * size - returns the number of items in the queue
+     */
+    public int size() {
+        return numItems;
+    }
+
+    /*
+     * newNode - returns an empty node with room for at least the 
+     * specified number of items, taking it from the free list if there
+     * is one there. (All of the nodes on the free list are full-size.)
+     */
+    private Node newNode(int capacity) {
+        if (free == null) {
+            return new Node(capacity);
+        }
+        Node node = free;
+        free = node.next;
+        node.next = null;
+        numFree--;
+        return node;
+    }
+
+    /*
+     * recycle - puts the specified node, whose items have all been
+     * removed, on the free list, unless it isn't full-size or the free
+     * list is already full.
+     */
+    private void recycle(Node node) {
+        node.start = 0;
+        node.end = 0;
+        if (numFree < MAX_FREE_NODES && node.items.length == CHUNK_SIZE) {
+            node.next = free;
+            free = node;
+            numFree++;
+        } else {
+            node.next = null;
+        }
+    }
+
     /* 
      * insert - adds the specified item at the rear of the queue.
      * Always returns true, because the linked list is never full.
      */
     public boolean insert(T item) {
-        Node newNode = new Node(item, null);
-        
-        if (isEmpty()) {
-            front = newNode;
-            rear = newNode;
-        } else {
+        if (rear == null) {
+            rear = newNode(FIRST_CHUNK_SIZE);
+            front = rear;
+        } else if (rear.end == rear.items.length) {
+            Node newNode = newNode(Math.min(2 * rear.items.length, CHUNK_SIZE));
             rear.next = newNode;
             rear = newNode;
         }
         
+        rear.items[rear.end] = item;
+        rear.end++;
+        numItems++;
         return true;
     }
     
     /* 
      * remove - removes the item at the front of the queue and returns a
      * reference to the removed object.  Returns null if the queue is
-     * empty.
+     * empty. The item's slot is cleared, so that the queue doesn't keep
+     * it from being garbage collected.
      */
+    @SuppressWarnings("unchecked")
     public T remove() {
         if (isEmpty()) {
             return null;
         }
         
-        T removed = front.item;
-        if (front == rear) {       // removing the only item
-            front = null;
-            rear = null;
-        } else {
-            front = front.next;
+        T removed = (T) front.items[front.start];
+        front.items[front.start] = null;
+        front.start++;
+        numItems--;
+        if (front.start == front.end) {
+            if (front == rear) {
+                // removed the last item; reuse the node from its start
+                front.start = 0;
+                front.end = 0;
+            } else {
+                Node emptied = front;
+                front = front.next;
+                recycle(emptied);
+            }
         }
         
         return removed;
@@ -91,29 +189,280 @@ public class LLQueue<T> implements Queue<T> {
      * peek - returns a reference to the item at the front of the queue
      * without removing it. Returns null if the queue is empty.
      */
+    @SuppressWarnings("unchecked")
     public T peek() {
         if (isEmpty()) {
             return null;
         }
-        return front.item;
+        return (T) front.items[front.start];
+    }
+
+    /*
+     * spliceFrom - moves all of the items of the specified queue to the
+     * rear of this one, leaving the other queue empty, and returns the
+     * number of items moved. The other queue's nodes are linked onto
+     * this queue's list as they are, so the time taken doesn't depend
+     * on the number of items.
+     */
+    public int spliceFrom(LLQueue<? extends T> other) {
+        if (other == null) {
+            throw new IllegalArgumentException("queue must be non-null");
+        }
+        if (other == this) {
+            throw new IllegalArgumentException("cannot splice a queue into itself");
+        }
+        int moved = other.numItems;
+        if (moved == 0) {
+            return 0;
+        }
+        
+        if (isEmpty()) {
+            if (front != null) {
+                recycle(front);
+            }
+            front = other.front;
+        } else {
+            rear.next = other.front;
+        }
+        rear = other.rear;
+        numItems += moved;
+        
+        other.front = null;
+        other.rear = null;
+        other.numItems = 0;
+        return moved;
     }
     
     /*
-     * toString - converts the stack into a String of the form 
+     * iterator - returns an iterator over the items in the queue, from
+     * front to rear. The queue must not be changed while the iterator
+     * is in use.
+     */
+    public Iterator<T> iterator() {
+        return new LLQueueIterator();
+    }
+
+    /*
+     * private inner class for an iterator over an LLQueue
+     */
+    private class LLQueueIterator implements Iterator<T> {
+        private Node nextNode;     // the node of the next item to visit
+        private int nextIndex;     // the index of that item in nextNode
+        private int remaining;     // the number of items not yet visited
+
+        private LLQueueIterator() {
+            nextNode = front;
+            nextIndex = (front == null) ? 0 : front.start;
+            remaining = numItems;
+        }
+
+        /*
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (remaining > 0);
+        }
+
+        /*
+         * next - returns a reference to the next item in the iteration
+         */
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            while (nextIndex == nextNode.end) {
+                nextNode = nextNode.next;
+                nextIndex = nextNode.start;
+            }
+            remaining--;
+            return (T) nextNode.items[nextIndex++];
+        }
+    }
+    
+    /*
+     * toString - converts the queue into a String of the form 
      * {front, one-after-front, two-after-front, ...}
      */
     public String toString() {
         String str = "{";
         
-        Node trav = front;
-        while (trav != null) {
-            str = str + trav.item;
-            if (trav.next != null)
+        Iterator<T> iter = iterator();
+        while (iter.hasNext()) {
+            str = str + iter.next();
+            if (iter.hasNext()) {
                 str = str + ", ";
-            trav = trav.next;
+            }
         }
         
         str = str + "}";
         return str;
     }
+
+    /*
+     * Private inner class for a queue with a node per item, the way that
+     * LLQueue kept its items before it had chunks. main compares the 
+     * memory that the two take.
+     */
+    private static class NodePerItemQueue {
+        private static class ItemNode {
+            private Object item;
+            private ItemNode next;
+        }
+        
+        private ItemNode front;
+        private ItemNode rear;
+        
+        private void insert(Object item) {
+            ItemNode node = new ItemNode();
+            node.item = item;
+            if (front == null) {
+                front = node;
+            } else {
+                rear.next = node;
+            }
+            rear = node;
+        }
+    }
+    
+    /*
+     * returns the number of bytes in use on the heap, once five GCs in a
+     * row have freed nothing
+     */
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        int quiet = 0;
+        while (quiet < 5) {
+            System.gc();
+            long now = rt.totalMemory() - rt.freeMemory();
+            quiet = (now < used) ? 0 : quiet + 1;
+            used = Math.min(used, now);
+        }
+        return used;
+    }
+    
+    /*
+     * returns the number of bytes per queue taken by numQueues queues of
+     * the specified number of items each, not counting the items: 
+     * LLQueues if chunked is true, and NodePerItemQueues otherwise
+     */
+    private static double bytesPerQueue(boolean chunked, int numQueues, int numItems) {
+        Object item = "item";
+        Object[] queues = new Object[numQueues];
+        long before = usedMemory();
+        for (int i = 0; i < numQueues; i++) {
+            if (chunked) {
+                LLQueue<Object> q = new LLQueue<Object>();
+                for (int j = 0; j < numItems; j++) {
+                    q.insert(item);
+                }
+                queues[i] = q;
+            } else {
+                NodePerItemQueue q = new NodePerItemQueue();
+                for (int j = 0; j < numItems; j++) {
+                    q.insert(item);
+                }
+                queues[i] = q;
+            }
+        }
+        long bytes = usedMemory() - before;
+        return (queues[numQueues - 1] != null) ? (double) bytes / numQueues : 0;
+    }
+
+    /*
+     * Self-tests for the chunked nodes and spliceFrom, then a comparison
+     * of the memory per queue with that of a node per item, for short
+     * and long queues.
+     */
+    public static void main(String[] args) {
+        System.out.println("(1.1) Testing on insert and remove");
+        try {
+            // 100 items fill nodes of 2, 4, 8, 16, 32, 32 and 32 slots,
+            // and removing 70 empties the first five; only the full-size
+            // one goes on the free list, to be reused by the next inserts
+            LLQueue<Integer> q = new LLQueue<Integer>();
+            for (int i = 0; i < 100; i++) {
+                q.insert(i);
+            }
+            boolean ok = true;
+            for (int i = 0; i < 70; i++) {
+                ok = ok && q.remove() == i;
+            }
+            String results = q.numFree + " ";
+            for (int i = 100; i < 200; i++) {
+                q.insert(i);
+            }
+            results += q.numFree + " " + q.size() + " " + q.peek() + " ";
+            int next = 70;
+            for (int item : q) {
+                ok = ok && item == next;
+                next++;
+            }
+            for (int i = 70; i < 200; i++) {
+                ok = ok && q.remove() == i;
+            }
+            // a drained queue keeps its last node, ready for reuse
+            results += ok + " " + q.isEmpty() + " " + q.remove() + " " + q + " "
+                       + (q.front != null && q.front == q.rear);
+            String expected = "1 0 130 70 true true null {} true";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.2) Testing on spliceFrom");
+        try {
+            // both queues have partly filled nodes at each end, which 
+            // stay partly filled in the middle of the spliced list
+            LLQueue<Object> q = new LLQueue<Object>();
+            LLQueue<Integer> other = new LLQueue<Integer>();
+            for (int i = 0; i < 40; i++) {
+                q.insert(i);
+                other.insert(100 + i);
+            }
+            for (int i = 0; i < 35; i++) {
+                q.remove();
+                other.remove();
+            }
+            String results = q.spliceFrom(other) + " " + other.isEmpty() + " " 
+                             + other.size() + " ";
+            q.insert("end");
+            results += q + " " + q.size() + " " + q.spliceFrom(new LLQueue<String>()) + " ";
+            try {
+                q.spliceFrom(q);
+            } catch (IllegalArgumentException e) {
+                results += "IAE ";
+            }
+            while (q.size() > 1) {
+                q.remove();
+            }
+            results += q.remove() + " " + q.isEmpty();
+            String expected = "5 true 0 {35, 36, 37, 38, 39, 135, 136, 137, 138, 139, end} 11 0 "
+                              + "IAE end true";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("bytes per queue    chunked nodes   a node per item");
+        int[][] shapes = {{100000, 1}, {100000, 2}, {50000, 10}, {1000, 1000}};
+        for (int[] shape : shapes) {
+            System.out.printf("%5d item(s) %15.1f %17.1f%n", shape[1],
+                              bytesPerQueue(true, shape[0], shape[1]),
+                              bytesPerQueue(false, shape[0], shape[1]));
+        }
+    }
 }
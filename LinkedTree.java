@@ -143,7 +143,7 @@ public class LinkedTree {
      * level-order traversal.
      */
     public void levelOrderPrint() {
-        LLQueue<NodePlusDepth> q = new LLQueue<NodePlusDepth>();
+        ArrayQueue<NodePlusDepth> q = new ArrayQueue<NodePlusDepth>();
         
         // Insert the root into the queue if the root is not null.
         if (root != null) {
@@ -0,0 +1,274 @@
+/*
+ * LockFreeQueue.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/*
+ * A generic class that implements our Queue interface with a linked list
+ * that any number of threads can insert into and remove from at once,
+ * without locks: the non-blocking algorithm of Michael and Scott.
+ *
+ * The list always starts with a dummy node; the item at the front of the
+ * queue is in the node after it. insert links a new node after the last
+ * one with a compare-and-set (CAS) on that node's next field, and then
+ * swings tail to it. remove swings head from the dummy node to the next
+ * one with a CAS, and that node becomes the new dummy. A thread that
+ * finds tail lagging behind the last node swings it forward before
+ * doing anything else, so a thread that stops halfway through an insert
+ * never blocks the others.
+ *
+ * A node is never reused, and the garbage collector doesn't reclaim it
+ * while any thread still refers to it, so a CAS can't succeed on a node
+ * that was removed and then reinserted (the ABA problem).
+ *
+ * null items are not allowed: remove and peek return null to report
+ * that the queue is empty, and a node whose item is null is one that
+ * has been removed.
+ */
+public class LockFreeQueue<T> implements Queue<T> {
+    // Inner class for a node.
+    private static class Node<T> {
+        private volatile T item;
+        private volatile Node<T> next;
+
+        private Node(T item) {
+            this.item = item;
+        }
+    }
+
+    // performs CAS operations on the next field of a node
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+    // the fields of the LockFreeQueue object
+    private final AtomicReference<Node<T>> head;   // the dummy node
+    private final AtomicReference<Node<T>> tail;   // the last node, or one before it
+
+    /*
+     * Constructs a LockFreeQueue object for a queue that is initially
+     * empty.
+     */
+    public LockFreeQueue() {
+        Node<T> dummy = new Node<T>(null);
+        head = new AtomicReference<Node<T>>(dummy);
+        tail = new AtomicReference<Node<T>>(dummy);
+    }
+
+    /*
+     * isEmpty - returns true if the queue is empty, and false otherwise.
+     * Other threads may change the queue right after it returns.
+     */
+    public boolean isEmpty() {
+        return head.get().next == null;
+    }
+
+    /*
+     * isFull - always returns false, because the linked list can
+     * grow indefinitely and thus the queue is never full.
+     */
+    public boolean isFull() {
+        return false;
+    }
+
+    /*
+     * insert - adds the specified item at the rear of the queue.
+     * Always returns true, because the linked list is never full.
+     */
+    public boolean insert(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException("item must be non-null");
+        }
+        Node<T> newNode = new Node<T>(item);
+        while (true) {
+            Node<T> last = tail.get();
+            Node<T> next = last.next;
+            if (last != tail.get()) {
+                continue;
+            }
+            if (next != null) {
+                // another insert hasn't swung tail yet; help it
+                tail.compareAndSet(last, next);
+            } else if (NEXT.compareAndSet(last, null, newNode)) {
+                tail.compareAndSet(last, newNode);
+                return true;
+            }
+        }
+    }
+
+    /*
+     * remove - removes the item at the front of the queue and returns a
+     * reference to the removed object. Returns null if the queue is
+     * empty.
+     */
+    public T remove() {
+        while (true) {
+            Node<T> first = head.get();
+            Node<T> last = tail.get();
+            Node<T> next = first.next;
+            if (first != head.get()) {
+                continue;
+            }
+            if (next == null) {
+                return null;
+            }
+            if (first == last) {
+                // tail is lagging behind the node after the dummy
+                tail.compareAndSet(last, next);
+                continue;
+            }
+            T item = next.item;
+            if (head.compareAndSet(first, next)) {
+                // next is the new dummy node; don't keep its item reachable
+                next.item = null;
+                return item;
+            }
+        }
+    }
+
+    /*
+     * peek - returns a reference to the item at the front of the queue
+     * without removing it. Returns null if the queue is empty.
+     */
+    public T peek() {
+        while (true) {
+            Node<T> first = head.get();
+            Node<T> next = first.next;
+            if (next == null) {
+                return null;
+            }
+            T item = next.item;
+            if (first == head.get()) {
+                return item;
+            }
+        }
+    }
+
+    /*
+     * size - returns the number of items in the queue. There is no
+     * shared counter for threads to contend on, so this counts the nodes
+     * and takes time proportional to the number of items. If other
+     * threads are changing the queue, the result is an estimate.
+     */
+    public int size() {
+        int count = 0;
+        for (Node<T> trav = head.get().next; trav != null; trav = trav.next) {
+            if (trav.item != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * iterator - returns an iterator over the items in the queue, from
+     * front to rear. Other threads may keep using the queue: the
+     * iterator never fails, but it skips items removed after it started,
+     * and it may or may not visit items inserted after it started.
+     */
+    public Iterator<T> iterator() {
+        return new LockFreeQueueIterator();
+    }
+
+    /*
+     * private inner class for an iterator over a LockFreeQueue
+     */
+    private class LockFreeQueueIterator implements Iterator<T> {
+        private Node<T> nextNode;     // the node of the next item to visit
+        private T nextItem;           // the next item to visit, or null
+
+        private LockFreeQueueIterator() {
+            nextNode = head.get();
+            advance();
+        }
+
+        /*
+         * advance - moves nextNode on to the next node that still holds
+         * an item; a removed node's item has been cleared.
+         */
+        private void advance() {
+            nextItem = null;
+            while (nextItem == null && nextNode != null) {
+                nextNode = nextNode.next;
+                if (nextNode != null) {
+                    nextItem = nextNode.item;
+                }
+            }
+        }
+
+        /*
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (nextItem != null);
+        }
+
+        /*
+         * next - returns a reference to the next item in the iteration
+         */
+        public T next() {
+            if (nextItem == null) {
+                throw new NoSuchElementException();
+            }
+            T item = nextItem;
+            advance();
+            return item;
+        }
+    }
+
+    /*
+     * toString - converts the queue into a String of the form
+     * {front, one-after-front, two-after-front, ...}. If other threads
+     * are changing the queue, the result may not be any one state of it.
+     */
+    public String toString() {
+        String str = "{";
+
+        Node<T> trav = head.get().next;
+        while (trav != null) {
+            str = str + trav.item;
+            if (trav.next != null) {
+                str = str + ", ";
+            }
+            trav = trav.next;
+        }
+
+        str = str + "}";
+        return str;
+    }
+
+    /*
+     * Correctness check, then contention test: first checks that 4
+     * producers and 4 consumers using the queue at once get every item
+     * out exactly once and in order per producer, and then compares
+     * this queue with a locked LLQueue at 1 to 64 threads, with each
+     * thread inserting and removing in turn. An optional argument gives
+     * the number of milliseconds to run each configuration.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long millis = (args.length > 0) ? Long.parseLong(args[0]) : 500;
+
+        System.out.println("(1) Testing concurrent producers and consumers");
+        LockFreeQueue<Integer> checked = new LockFreeQueue<Integer>();
+        int errors = ConcurrentHarness.checkQueue(checked, 4, 200000);
+        System.out.println("wrong results: " + errors);
+        System.out.print("MATCHES EXPECTED RESULTS?: ");
+        System.out.println(errors == 0);
+        System.out.println();
+
+        System.out.println("threads   locked LLQueue (ops/ms)   lock-free (ops/ms)");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            double lockedOps = ConcurrentHarness.queueThroughput(
+                new ConcurrentHarness.LockedQueue<Integer>(), threads, millis);
+            double lockFreeOps = ConcurrentHarness.queueThroughput(
+                new LockFreeQueue<Integer>(), threads, millis);
+            System.out.printf("%7d   %23.0f   %18.0f%n", threads, lockedOps, lockFreeOps);
+        }
+    }
+}
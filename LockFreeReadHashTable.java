@@ -0,0 +1,512 @@
+/*
+ * LockFreeReadHashTable.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * A thread-safe hash table using separate chaining in which search never
+ * takes a lock.
+ *
+ * The nodes of a chain are immutable once they are linked in, and the
+ * head of each chain is published through an AtomicReferenceArray, so a
+ * reader always sees a complete chain. Writers lock the bucket (through
+ * a striped lock) and, instead of changing a node, build a new copy of
+ * the part of the chain in front of it: remove relinks the copied prefix
+ * to the removed node's successor, and inserting another value for an
+ * existing key replaces its node with one that has the longer array of
+ * values. A resize takes all of the locks, which holds up writers but
+ * not readers, who keep using the old array until the new one is
+ * published.
+ *
+ * search and remove return a read-only snapshot of the key's values:
+ * removing items from the returned queue steps through the snapshot
+ * without changing the table, and insert always fails.
+ *
+ * Because a node's array of values is never changed, adding a value to
+ * a key that already has n of them copies all n, so giving one key N
+ * values takes O(N^2) time in all. The table suits keys with a few
+ * values each; a key that collects many values is better kept in
+ * ConcurrentChainedHashTable, whose queues grow in place.
+ */
+public class LockFreeReadHashTable implements HashTable {
+    /* Private inner class for an immutable node in a bucket's chain */
+    private static class Node {
+        private final Object key;
+        private final int hash;
+        private final Object[] values;
+        private final Node next;
+
+        private Node(Object key, int hash, Object[] values, Node next) {
+            this.key = key;
+            this.hash = hash;
+            this.values = values;
+            this.next = next;
+        }
+    }
+
+    /* Private inner class for a read-only snapshot of a key's values */
+    private static class Snapshot implements Queue<Object> {
+        private final Object[] values;
+        private int front;
+
+        private Snapshot(Object[] values) {
+            this.values = values;
+            front = 0;
+        }
+
+        public boolean insert(Object item) {
+            return false;
+        }
+
+        public Object remove() {
+            if (isEmpty()) {
+                return null;
+            }
+            return values[front++];
+        }
+
+        public Object peek() {
+            if (isEmpty()) {
+                return null;
+            }
+            return values[front];
+        }
+
+        public boolean isEmpty() {
+            return front == values.length;
+        }
+
+        public boolean isFull() {
+            return true;
+        }
+
+        public int size() {
+            return values.length - front;
+        }
+
+        public Iterator<Object> iterator() {
+            return Arrays.asList(values).subList(front, values.length).iterator();
+        }
+
+        public String toString() {
+            String str = "{";
+            for (int i = front; i < values.length; i++) {
+                str = str + values[i];
+                if (i < values.length - 1) {
+                    str = str + ", ";
+                }
+            }
+            return str + "}";
+        }
+    }
+
+    // the default load factor above which the table grows
+    public static final double DEFAULT_MAX_LOAD = 0.75;
+
+    // the number of locks that the buckets are striped across
+    private static final int NUM_LOCKS = 64;
+
+    private volatile AtomicReferenceArray<Node> table;
+    private ReentrantLock[] locks;
+    private LongAdder numKeys;
+    private double maxLoad;
+
+    /*
+     * Constructor for a table with at least the specified number of
+     * buckets. The size is rounded up to a power of two that is at
+     * least the number of locks.
+     */
+    public LockFreeReadHashTable(int size) {
+        this(size, DEFAULT_MAX_LOAD);
+    }
+
+    public LockFreeReadHashTable(int size, double maxLoad) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("invalid size");
+        }
+        if (!(maxLoad > 0)) {
+            throw new IllegalArgumentException("invalid maxLoad: " + maxLoad);
+        }
+
+        int length = NUM_LOCKS;
+        while (length < size) {
+            length *= 2;
+        }
+        table = new AtomicReferenceArray<Node>(length);
+        locks = new ReentrantLock[NUM_LOCKS];
+        for (int i = 0; i < NUM_LOCKS; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        numKeys = new LongAdder();
+        this.maxLoad = maxLoad;
+    }
+
+    /*
+     * hash - mixes the bits of the key's hash code so that the low
+     * bits, which pick the bucket, depend on all of them.
+     */
+    private static int hash(Object key) {
+        return HashStrategy.SPREAD.hash(key);
+    }
+
+    /*
+     * lockFor - returns the lock for the bucket of the specified hash.
+     * Every table length is a multiple of NUM_LOCKS, so a bucket's lock
+     * stays the same when the table grows.
+     */
+    private ReentrantLock lockFor(int hash) {
+        return locks[hash & (NUM_LOCKS - 1)];
+    }
+
+    /*
+     * insert - insert the specified (key, value) pair in the hash table.
+     * Always returns true, because the table grows as needed.
+     */
+    public boolean insert(Object key, Object value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hash = hash(key);
+        ReentrantLock lock = lockFor(hash);
+        AtomicReferenceArray<Node> tab;
+        boolean added;
+        lock.lock();
+        try {
+            tab = table;      // a resize can't start while we hold the lock
+            int index = hash & (tab.length() - 1);
+            Node head = tab.get(index);
+            Node found = head;
+            while (found != null && !(found.hash == hash && key.equals(found.key))) {
+                found = found.next;
+            }
+
+            if (found == null) {
+                tab.set(index, new Node(key, hash, new Object[] { value }, head));
+                added = true;
+            } else {
+                // copies all of the key's values; see the class comment
+                Object[] values = new Object[found.values.length + 1];
+                System.arraycopy(found.values, 0, values, 0, found.values.length);
+                values[found.values.length] = value;
+                Node replacement = new Node(key, hash, values, found.next);
+                tab.set(index, copyPrefix(head, found, replacement));
+                added = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (added) {
+            numKeys.increment();
+            if (numKeys.sum() > maxLoad * tab.length()) {
+                grow(tab);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * search - search for the specified key and return a snapshot of the
+     * associated collection of values, or null if the key is not in the
+     * table. Never blocks.
+     */
+    public Queue<Object> search(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hash = hash(key);
+        AtomicReferenceArray<Node> tab = table;
+        Node trav = tab.get(hash & (tab.length() - 1));
+        while (trav != null) {
+            if (trav.hash == hash && key.equals(trav.key)) {
+                return new Snapshot(trav.values);
+            }
+            trav = trav.next;
+        }
+        return null;
+    }
+
+    /*
+     * remove - remove from the table the entry for the specified key
+     * and return a snapshot of the associated collection of values,
+     * or null if the key is not in the table
+     */
+    public Queue<Object> remove(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        int hash = hash(key);
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            AtomicReferenceArray<Node> tab = table;
+            int index = hash & (tab.length() - 1);
+            Node head = tab.get(index);
+            Node found = head;
+            while (found != null && !(found.hash == hash && key.equals(found.key))) {
+                found = found.next;
+            }
+            if (found == null) {
+                return null;
+            }
+
+            tab.set(index, copyPrefix(head, found, found.next));
+            numKeys.decrement();
+            return new Snapshot(found.values);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * copyPrefix - returns a copy of the nodes from head up to (but not
+     * including) stop, followed by rest.
+     */
+    private static Node copyPrefix(Node head, Node stop, Node rest) {
+        int length = 0;
+        for (Node trav = head; trav != stop; trav = trav.next) {
+            length++;
+        }
+        Node[] prefix = new Node[length];
+        int i = 0;
+        for (Node trav = head; trav != stop; trav = trav.next) {
+            prefix[i++] = trav;
+        }
+        
+        Node copy = rest;
+        for (i = length - 1; i >= 0; i--) {
+            copy = new Node(prefix[i].key, prefix[i].hash, prefix[i].values, copy);
+        }
+        return copy;
+    }
+
+    /*
+     * getNumKeys - returns the number of keys in the table. While other
+     * threads are inserting or removing keys, the result is an estimate.
+     */
+    public int getNumKeys() {
+        return numKeys.intValue();
+    }
+
+    /*
+     * load - returns the number of keys in the table divided by the
+     * number of buckets.
+     */
+    public double load() {
+        return (double) numKeys.sum() / table.length();
+    }
+
+    /*
+     * resize - grows the table to have at least the specified number of
+     * buckets. Writers wait until the resize is done; readers don't.
+     */
+    public void resize(int size) {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            AtomicReferenceArray<Node> tab = table;
+            int length = tab.length();
+            while (length < size) {
+                length *= 2;
+            }
+            if (length != tab.length()) {
+                table = rehash(tab, length);
+            }
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * grow - doubles the size of the specified table, unless another
+     * thread has already replaced it.
+     */
+    private void grow(AtomicReferenceArray<Node> tab) {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            if (table == tab) {
+                table = rehash(tab, 2 * tab.length());
+            }
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * rehash - returns a new array of the specified length that holds
+     * copies of the nodes in the specified one. The old nodes are left
+     * untouched, because readers may still be walking them.
+     */
+    private static AtomicReferenceArray<Node> rehash(AtomicReferenceArray<Node> tab, int length) {
+        Node[] heads = new Node[length];
+        for (int i = 0; i < tab.length(); i++) {
+            for (Node trav = tab.get(i); trav != null; trav = trav.next) {
+                int index = trav.hash & (length - 1);
+                heads[index] = new Node(trav.key, trav.hash, trav.values, heads[index]);
+            }
+        }
+        return new AtomicReferenceArray<Node>(heads);
+    }
+
+    /*
+     * readLatency - measures the average time in nanoseconds of a search
+     * on the specified table while numWriters threads keep inserting and
+     * removing keys in it.
+     */
+    private static double readLatency(final HashTable table, int numWriters,
+                                      final int numKeys, int numReads)
+        throws InterruptedException
+    {
+        final AtomicBoolean done = new AtomicBoolean(false);
+        Thread[] writers = new Thread[numWriters];
+        for (int t = 0; t < numWriters; t++) {
+            final int seed = t;
+            writers[t] = new Thread(new Runnable() {
+                public void run() {
+                    Random rand = new Random(seed);
+                    while (!done.get()) {
+                        Integer key = rand.nextInt(numKeys);
+                        if (rand.nextBoolean()) {
+                            table.insert(key, key);
+                        } else {
+                            table.remove(key);
+                        }
+                    }
+                }
+            });
+            writers[t].start();
+        }
+
+        Random rand = new Random(-1);
+        long start = System.nanoTime();
+        for (int i = 0; i < numReads; i++) {
+            table.search(rand.nextInt(numKeys));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        done.set(true);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        return (double) elapsed / numReads;
+    }
+
+    /*
+     * Self-tests, then a read latency test: first checks the results of
+     * one thread, and then of 8 writer threads and a lock-free reader at
+     * once, in a table that grows many times during the check. Then 
+     * compares the average search time of this table and of 
+     * ConcurrentChainedHashTable as the number of writer threads grows.
+     * An optional argument gives the number of searches to time.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int numReads = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+        int numKeys = 100000;
+
+        System.out.println("(1.1) Testing on insert, search, remove and grow in one thread");
+        try {
+            LockFreeReadHashTable table = new LockFreeReadHashTable(1);
+            for (int k = 0; k < 200; k++) {
+                table.insert(k, "v" + k);
+            }
+            table.insert(5, "w5");
+            String results = table.table.length() + " " + table.search(5) + " "
+                             + table.remove(7) + " " + table.remove(7) + " " 
+                             + table.search(7) + " ";
+            for (int k = 9; k < 200; k += 3) {
+                table.remove(k);
+            }
+            table.resize(1000);
+            boolean ok = true;
+            for (int k = 8; k < 200; k++) {
+                Queue<Object> vals = table.search(k);
+                if (k % 3 == 0) {
+                    ok = ok && vals == null;
+                } else {
+                    ok = ok && vals != null && vals.toString().equals("{v" + k + "}");
+                }
+            }
+            results += table.table.length() + " " + table.getNumKeys() + " " + ok;
+            String expected = "512 {v5, w5} {v7} null null 1024 135 true";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+
+        System.out.println("(1.2) Testing on the snapshots that search returns");
+        try {
+            // a snapshot can't be added to, and stepping through it 
+            // changes neither the table nor later snapshots
+            LockFreeReadHashTable table = new LockFreeReadHashTable(64);
+            table.insert("a", 1);
+            table.insert("a", 2);
+            Queue<Object> vals = table.search("a");
+            table.insert("a", 3);
+            String results = vals.insert(4) + " " + vals.isFull() + " " + vals.size() + " ";
+            results += vals.remove() + " " + vals + " " + vals.peek() + " ";
+            results += vals.remove() + " " + vals.remove() + " " + vals.isEmpty() + " ";
+            results += table.search("a") + " " + table.remove("a") + " " + table.search("a");
+            String expected = "false true 2 1 {2} 2 2 null true {1, 2, 3} {1, 2, 3} null";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+
+        System.out.println("(1.3) Testing on concurrent inserts, searches and removes");
+        try {
+            // starting at 64 buckets, grow takes all of the locks many
+            // times while the reader keeps searching without any
+            int errors = ConcurrentHarness.checkTable(new LockFreeReadHashTable(64), 8, 20000);
+            System.out.println("wrong results: " + errors);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(errors == 0);
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+
+        System.out.println("writers   striped locks (ns/search)   lock-free reads (ns/search)");
+        for (int writers = 0; writers <= 16; writers = (writers == 0) ? 1 : 2 * writers) {
+            HashTable striped = new ConcurrentChainedHashTable(1024);
+            HashTable lockFree = new LockFreeReadHashTable(1024);
+            for (int i = 0; i < numKeys; i += 2) {
+                striped.insert(i, i);
+                lockFree.insert(i, i);
+            }
+            double stripedNs = readLatency(striped, writers, numKeys, numReads);
+            double lockFreeNs = readLatency(lockFree, writers, numKeys, numReads);
+            System.out.printf("%7d   %25.1f   %27.1f%n", writers, stripedNs, lockFreeNs);
+        }
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * LongHashTable.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/*
+ * A class that implements a hash table with primitive long keys, using
+ * open addressing with linear probing.
+ *
+ * The keys are stored directly in a long[], so inserting, searching for,
+ * or removing a key never boxes it. Like the other tables, a key can have
+ * any number of values. They are kept in a parallel Object[]: a key's
+ * only value is stored there as is, and only a key with more than one
+ * value gets a queue, as in ChainedHashTable. The value 0 marks an empty
+ * slot in the keys array, so the values for the key 0 itself are kept in
+ * separate fields. Removal shifts later entries
+ * of the cluster back instead of leaving a removed marker, and the table
+ * doubles in size when its load passes maxLoad, so insert never overflows.
+ *
+ * The table does not implement HashTable: with both insert(long, Object)
+ * and insert(Object, Object), a call such as insert(5L, 42) would be
+ * ambiguous.
+ */
+public class LongHashTable {
+    /*
+     * Private inner class for the values of a key that has more than
+     * one. A key with a single value holds it without a queue.
+     */
+    private static class Values extends ArrayQueue<Object> {
+        private Values() {
+        }
+        
+        private Values(Object first) {
+            insert(first);
+        }
+    }
+    
+    /*
+     * Private inner class for the Queue of values that search returns: a
+     * view of the values of its key, so that a key with one value needs
+     * no queue of its own. The view looks the key up each time it is
+     * used, because removals and rehashes move keys between slots.
+     * Changes made through the view are changes to the table; once the
+     * key has been removed the view is empty, and inserting through it
+     * puts the key back.
+     */
+    private class ValueView implements Queue<Object> {
+        private long key;
+        
+        private ValueView(long key) {
+            this.key = key;
+        }
+        
+        public boolean insert(Object item) {
+            return LongHashTable.this.insert(key, item);
+        }
+        
+        public Object remove() {
+            Object vals = valuesOf(key);
+            if (vals == NOT_FOUND) {
+                return null;
+            } else if (vals instanceof Values) {
+                return ((Values) vals).remove();
+            }
+            setValues(key, new Values());
+            return vals;
+        }
+        
+        public Object peek() {
+            Object vals = valuesOf(key);
+            if (vals == NOT_FOUND) {
+                return null;
+            }
+            return (vals instanceof Values) ? ((Values) vals).peek() : vals;
+        }
+        
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+        
+        public boolean isFull() {
+            return false;
+        }
+        
+        public int size() {
+            Object vals = valuesOf(key);
+            if (vals == NOT_FOUND) {
+                return 0;
+            }
+            return (vals instanceof Values) ? ((Values) vals).size() : 1;
+        }
+        
+        public Iterator<Object> iterator() {
+            Object vals = valuesOf(key);
+            if (vals == NOT_FOUND) {
+                return Collections.emptyIterator();
+            } else if (vals instanceof Values) {
+                return ((Values) vals).iterator();
+            }
+            return Collections.singleton(vals).iterator();
+        }
+        
+        public boolean equals(Object other) {
+            if (!(other instanceof LongHashTable.ValueView)) {
+                return false;
+            }
+            ValueView view = (ValueView) other;
+            return view.table() == LongHashTable.this && view.key == key;
+        }
+        
+        public int hashCode() {
+            return Long.hashCode(key);
+        }
+        
+        public String toString() {
+            Object vals = valuesOf(key);
+            if (vals == NOT_FOUND) {
+                return "{}";
+            }
+            return (vals instanceof Values) ? vals.toString() : "{" + vals + "}";
+        }
+        
+        private LongHashTable table() {
+            return LongHashTable.this;
+        }
+    }
+    
+    // the key value that marks an empty slot
+    private static final long EMPTY = 0L;
+    
+    // what valuesOf returns for a key that isn't in the table
+    private static final Object NOT_FOUND = new Object();
+
+    // the default load factor above which the table grows
+    public static final double DEFAULT_MAX_LOAD = 0.75;
+
+    private long[] keys;                 // the keys, or EMPTY
+    private Object[] values;             // the only value or the Values of keys[i]
+    private boolean hasZero;             // is key 0 in the table?
+    private Object zeroValues;           // the only value or the Values of key 0
+    private int numKeys;                 // including key 0, if present
+    private double maxLoad;
+
+    public LongHashTable(int size) {
+        this(size, DEFAULT_MAX_LOAD);
+    }
+
+    /*
+     * Constructor for a table with at least the specified number of
+     * slots, rounded up to a power of two, that doubles in size whenever
+     * its load factor passes maxLoad.
+     */
+    public LongHashTable(int size, double maxLoad) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        if (!(maxLoad > 0 && maxLoad < 1)) {
+            throw new IllegalArgumentException("invalid maxLoad: " + maxLoad);
+        }
+
+        int length = 2;
+        while (length < size) {
+            length *= 2;
+        }
+        keys = new long[length];
+        values = new Object[length];
+        hasZero = false;
+        zeroValues = null;
+        numKeys = 0;
+        this.maxLoad = maxLoad;
+    }
+
+    /*
+     * slot - returns the first slot to probe for the specified key. The
+     * bits of the key are mixed (with the finalizer of MurmurHash3), so
+     * that sequential IDs are spread over the whole table.
+     */
+    private int slot(long key) {
+        long h = key;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return (int) h & (keys.length - 1);
+    }
+
+    /*
+     * probe - returns the index of the slot that holds the specified
+     * (nonzero) key, or of the empty slot where it would go.
+     */
+    private int probe(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /*
+     * inline - returns what the table holds for a key whose only value is
+     * the specified one: the value itself, unless it is a Values queue,
+     * which would be taken for the key's queue of values.
+     */
+    private static Object inline(Object value) {
+        if (value instanceof Values) {
+            return new Values(value);
+        }
+        return value;
+    }
+
+    /*
+     * addValue - returns what the table holds for a key after the
+     * specified value is added to vals, which the table held before.
+     */
+    private static Object addValue(Object vals, Object value) {
+        if (!(vals instanceof Values)) {
+            vals = new Values(vals);
+        }
+        ((Values) vals).insert(value);
+        return vals;
+    }
+
+    /*
+     * valuesOf - returns what the table holds for the specified key: its
+     * only value, its Values, or NOT_FOUND if it isn't in the table.
+     */
+    private Object valuesOf(long key) {
+        if (key == EMPTY) {
+            return hasZero ? zeroValues : NOT_FOUND;
+        }
+        int i = probe(key);
+        return (keys[i] == EMPTY) ? NOT_FOUND : values[i];
+    }
+
+    /* setValues - replaces what the table holds for a key that is in it */
+    private void setValues(long key, Object vals) {
+        if (key == EMPTY) {
+            zeroValues = vals;
+        } else {
+            values[probe(key)] = vals;
+        }
+    }
+
+    /*
+     * insert - insert the specified (key, value) pair in the hash table.
+     * Always returns true, because the table grows as needed.
+     */
+    public boolean insert(long key, Object value) {
+        if (key == EMPTY) {
+            if (hasZero) {
+                zeroValues = addValue(zeroValues, value);
+            } else {
+                hasZero = true;
+                zeroValues = inline(value);
+                numKeys++;
+            }
+            return true;
+        }
+
+        int i = probe(key);
+        if (keys[i] != EMPTY) {
+            values[i] = addValue(values[i], value);
+            return true;
+        }
+        keys[i] = key;
+        values[i] = inline(value);
+        numKeys++;
+
+        if (numKeys > maxLoad * keys.length) {
+            rehash(2 * keys.length);
+        }
+        return true;
+    }
+
+    /*
+     * search - search for the specified key and return the
+     * associated collection of values, or null if the key
+     * is not in the table
+     */
+    public Queue<Object> search(long key) {
+        if (valuesOf(key) == NOT_FOUND) {
+            return null;
+        }
+        return new ValueView(key);
+    }
+
+    /* returns the values that the table held for a removed key, as a queue */
+    private static Queue<Object> removed(Object vals) {
+        return (vals instanceof Values) ? (Values) vals : new Values(vals);
+    }
+
+    /*
+     * remove - remove from the table the entry for the specified key
+     * and return the associated collection of values, or null if the key
+     * is not in the table
+     */
+    public Queue<Object> remove(long key) {
+        if (key == EMPTY) {
+            if (!hasZero) {
+                return null;
+            }
+            Queue<Object> removedVals = removed(zeroValues);
+            hasZero = false;
+            zeroValues = null;
+            numKeys--;
+            return removedVals;
+        }
+
+        int i = probe(key);
+        if (keys[i] == EMPTY) {
+            return null;
+        }
+        Queue<Object> removedVals = removed(values[i]);
+        numKeys--;
+
+        // Shift back any later entry of the cluster that can legally move
+        // into the hole, so that no probe sequence is broken.
+        int mask = keys.length - 1;
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != EMPTY) {
+            int home = slot(keys[j]);
+            // the entry at j can fill the hole unless its home slot lies
+            // (cyclically) in the range (hole, j]
+            boolean homeAfterHole = (hole <= j) ? (hole < home && home <= j)
+                                                : (hole < home || home <= j);
+            if (!homeAfterHole) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        return removedVals;
+    }
+
+    /*
+     * getNumKeys - returns the number of keys in the table.
+     */
+    public int getNumKeys() {
+        return numKeys;
+    }
+
+    /*
+     * load - returns the number of keys in the table divided by the
+     * number of slots.
+     */
+    public double load() {
+        return (double) numKeys / keys.length;
+    }
+
+    /*
+     * rehash - moves all of the entries into new arrays of the specified
+     * length.
+     */
+    private void rehash(int length) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[length];
+        values = new Object[length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = probe(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /* returns the number of bytes in use on the heap, after a GC */
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /*
+     * Self-tests, then a memory and throughput comparison with 
+     * ChainedHashTable. An optional
+     * argument gives the number of keys (10 million by default, which
+     * needs a heap of a few gigabytes, e.g. java -Xmx4g).
+     */
+    public static void main(String[] args) {
+        System.out.println("(1.1) Testing on insert and search");
+        try {
+            // 0 is stored apart from the other keys, and negative keys
+            // are as good as any other
+            LongHashTable table = new LongHashTable(4);
+            table.insert(0, "a");
+            table.insert(0, "b");
+            table.insert(-1, "c");
+            table.insert(Long.MIN_VALUE, "d");
+            table.insert(31, "e");
+            String results = table.search(0) + " " + table.search(-1) + " "
+                             + table.search(Long.MIN_VALUE) + " " + table.search(31) + " "
+                             + table.search(62) + " " + table.getNumKeys();
+            String expected = "{a, b} {c} {d} {e} null 4";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.2) Testing on remove");
+        try {
+            // at a load of up to 0.9 the clusters are long, so removals 
+            // shift many entries back
+            LongHashTable table = new LongHashTable(4, 0.9);
+            for (long k = 0; k < 2000; k++) {
+                table.insert(k, "v" + k);
+            }
+            String results = table.remove(3) + " " + table.remove(3) + " " + table.remove(0)
+                             + " " + table.remove(5000) + " ";
+            for (long k = 6; k < 2000; k += 3) {
+                table.remove(k);
+            }
+            boolean ok = true;
+            for (long k = 0; k < 2000; k++) {
+                Queue<Object> vals = table.search(k);
+                if (k % 3 == 0) {
+                    ok = ok && vals == null;
+                } else {
+                    ok = ok && vals != null && vals.peek().equals("v" + k);
+                }
+            }
+            results += table.getNumKeys() + " " + ok;
+            String expected = "{v3} null {v0} null 1333 true";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.3) Testing on the queue that search returns");
+        try {
+            // a key with one value has no queue, but the queue that search
+            // returns still follows the key through rehashes and removal
+            LongHashTable table = new LongHashTable(4);
+            table.insert(7, "a");
+            table.insert(0, "z");
+            Queue<Object> vals = table.search(7);
+            Queue<Object> zero = table.search(0);
+            String results = vals + " " + vals.size() + " ";
+            vals.insert("b");
+            for (long k = 100; k < 200; k++) {
+                table.insert(k, "v" + k);
+            }
+            results += table.search(7) + " ";
+            results += vals.remove() + " " + vals.remove() + " " + vals.isEmpty() + " ";
+            results += zero.remove() + " " + table.search(0) + " ";
+            vals.insert("c");
+            Queue<Object> removedVals = table.remove(7);
+            results += removedVals + " " + vals + " " + table.search(7) + " "
+                       + table.getNumKeys();
+            String expected = "{a} 1 {a, b} a b true z {} {c} {} null 101";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 10000000;
+        String value = "value";
+
+        long before = usedMemory();
+        long start = System.nanoTime();
+        LongHashTable longTable = new LongHashTable(16);
+        for (long k = 1; k <= n; k++) {
+            longTable.insert(k * 31, value);
+        }
+        long insertNs = System.nanoTime() - start;
+        long longBytes = usedMemory() - before;
+        start = System.nanoTime();
+        long found = 0;
+        for (long k = 1; k <= n; k++) {
+            if (longTable.search(k * 31) != null) {
+                found++;
+            }
+        }
+        long searchNs = System.nanoTime() - start;
+        System.out.printf("LongHashTable:    %6.1f bytes/key, insert %6.1f ns/key, "
+                          + "search %6.1f ns/key (%d found)%n",
+                          (double) longBytes / n, (double) insertNs / n,
+                          (double) searchNs / n, found);
+        longTable = null;
+
+        before = usedMemory();
+        start = System.nanoTime();
+        ChainedHashTable chainedTable = new ChainedHashTable(16, 0.75);
+        for (long k = 1; k <= n; k++) {
+            chainedTable.insert(k * 31, value);
+        }
+        insertNs = System.nanoTime() - start;
+        long chainedBytes = usedMemory() - before;
+        start = System.nanoTime();
+        found = 0;
+        for (long k = 1; k <= n; k++) {
+            if (chainedTable.search(k * 31) != null) {
+                found++;
+            }
+        }
+        searchNs = System.nanoTime() - start;
+        System.out.printf("ChainedHashTable: %6.1f bytes/key, insert %6.1f ns/key, "
+                          + "search %6.1f ns/key (%d found)%n",
+                          (double) chainedBytes / n, (double) insertNs / n,
+                          (double) searchNs / n, found);
+    }
+}
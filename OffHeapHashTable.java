@@ -0,0 +1,706 @@
+/*
+ * OffHeapHashTable.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/*
+ * A class that implements a hash table whose keys and values live outside
+ * of the Java heap, in direct ByteBuffers, so that the garbage collector
+ * never has to trace them no matter how big the table gets.
+ *
+ * Keys and values are converted to bytes by the Codecs given to the
+ * constructor. The records are appended to fixed-size slabs:
+ *
+ *   key record:   hash (int), key length (int), first value (long),
+ *                 last value (long), key bytes
+ *   value record: next value (long), value length (int), value bytes
+ *
+ * where a "long" is the address of another record: the slab number in its
+ * upper 32 bits and the offset in that slab in its lower 32 bits. The
+ * index is another direct buffer that holds, for each slot, the address
+ * of a key record (or EMPTY or REMOVED) and the key's hash, and it uses
+ * open addressing with linear probing. When the index gets too full, or
+ * when removed records take up more space than both the live ones and a
+ * whole slab, the live records are copied into other slabs and the
+ * index is rebuilt. The old slabs are kept for the next rebuild, and the
+ * index is reused if its capacity doesn't change, so that a table whose
+ * size stays the same stops allocating direct memory.
+ *
+ * Like the other tables, a key can have any number of values. search and
+ * remove return a queue of newly decoded copies of the values; changing
+ * it does not change the table.
+ */
+public class OffHeapHashTable<K, V> implements HashTable {
+    // markers for the address in an index slot
+    private static final long EMPTY = 0L;
+    private static final long REMOVED = -1L;
+    private static final long NONE = 0L;       // a missing "next value"
+
+    // the size of an index slot and the offsets of its fields
+    private static final int SLOT_SIZE = 16;
+    private static final int SLOT_HASH = 8;
+
+    // the offsets of the fields of a key record
+    private static final int KEY_HASH = 0;
+    private static final int KEY_LENGTH = 4;
+    private static final int KEY_FIRST = 8;
+    private static final int KEY_LAST = 16;
+    private static final int KEY_BYTES = 24;
+
+    // the offsets of the fields of a value record
+    private static final int VALUE_NEXT = 0;
+    private static final int VALUE_LENGTH = 8;
+    private static final int VALUE_BYTES = 12;
+
+    // the default size of a slab, in bytes
+    public static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    // the maximum fraction of index slots that can be used or removed
+    private static final double MAX_LOAD = 0.75;
+
+    private Codec<K> keyCodec;
+    private Codec<V> valueCodec;
+    private int slabSize;
+
+    private ArrayList<ByteBuffer> slabs;   // the records
+    private ArrayList<ByteBuffer> spareSlabs;  // unused slabs from the last rebuild
+    private int slabOffset;                // the next free byte in the last slab
+    private long liveBytes;                // bytes used by the records of live keys
+    private long deadBytes;                // bytes used by records of removed keys
+
+    private ByteBuffer index;
+    private int capacity;                  // the number of index slots
+    private int numKeys;
+    private int numRemoved;                // the number of REMOVED slots
+
+    private ByteBuffer keyScratch;         // heap buffers for encoding
+    private ByteBuffer valueScratch;
+
+    public OffHeapHashTable(int size, Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(size, keyCodec, valueCodec, DEFAULT_SLAB_SIZE);
+    }
+
+    /*
+     * Constructor for a table with room for at least the specified number
+     * of keys before its index has to grow, whose records are stored in
+     * slabs of the specified number of bytes.
+     */
+    public OffHeapHashTable(int size, Codec<K> keyCodec, Codec<V> valueCodec,
+                            int slabSize) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        if (keyCodec == null || valueCodec == null) {
+            throw new IllegalArgumentException("codecs must be non-null");
+        }
+        if (slabSize < 64) {
+            throw new IllegalArgumentException("invalid slabSize: " + slabSize);
+        }
+
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.slabSize = slabSize;
+        keyScratch = ByteBuffer.allocate(64);
+        valueScratch = ByteBuffer.allocate(64);
+        spareSlabs = new ArrayList<ByteBuffer>();
+
+        int cap = 2;
+        while (cap * MAX_LOAD < size) {
+            cap *= 2;
+        }
+        initStorage(cap);
+    }
+
+    /*
+     * initStorage - starts over with an empty index of the specified
+     * capacity and no records. The current index is cleared and reused
+     * if it has that capacity.
+     */
+    private void initStorage(int cap) {
+        if (index != null && capacity == cap) {
+            for (int i = 0; i < cap * SLOT_SIZE; i += 8) {
+                index.putLong(i, EMPTY);
+            }
+        } else {
+            index = ByteBuffer.allocateDirect(cap * SLOT_SIZE);
+        }
+        capacity = cap;
+        slabs = new ArrayList<ByteBuffer>();
+        slabs.add(newSlab());
+        slabOffset = 8;        // so that no record has address 0 (EMPTY)
+        liveBytes = 0;
+        deadBytes = 0;
+        numKeys = 0;
+        numRemoved = 0;
+    }
+
+    /*
+     * Helper methods for working with addresses and slabs.
+     */
+    private ByteBuffer slab(long address) {
+        return slabs.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    /* returns a spare slab if there is one, and a newly allocated one otherwise */
+    private ByteBuffer newSlab() {
+        if (!spareSlabs.isEmpty()) {
+            return spareSlabs.remove(spareSlabs.size() - 1);
+        }
+        return ByteBuffer.allocateDirect(slabSize);
+    }
+
+    /*
+     * allocate - reserves the specified number of bytes in the slabs and
+     * returns their address. Records are 8-byte aligned and never cross
+     * from one slab to the next.
+     */
+    private long allocate(int bytes) {
+        bytes = (bytes + 7) & ~7;
+        if (bytes > slabSize) {
+            throw new IllegalArgumentException("record of " + bytes
+                                               + " bytes doesn't fit in a slab");
+        }
+        if (slabOffset + bytes > slabSize) {
+            slabs.add(newSlab());
+            slabOffset = 0;
+        }
+        long address = ((long) (slabs.size() - 1) << 32) | slabOffset;
+        slabOffset += bytes;
+        return address;
+    }
+
+    private static int keyRecordSize(int keyLength) {
+        return (KEY_BYTES + keyLength + 7) & ~7;
+    }
+
+    private static int valueRecordSize(int valueLength) {
+        return (VALUE_BYTES + valueLength + 7) & ~7;
+    }
+
+    /*
+     * encode - encodes the specified object into the specified scratch
+     * buffer, or into a bigger one if it doesn't fit, and returns the
+     * buffer that was used, flipped for reading. PersistentHashTable
+     * uses it too.
+     */
+    static <T> ByteBuffer encode(Codec<T> codec, T obj, ByteBuffer scratch) {
+        while (true) {
+            scratch.clear();
+            try {
+                codec.encode(obj, scratch);
+                scratch.flip();
+                return scratch;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(2 * scratch.capacity());
+            }
+        }
+    }
+
+    /*
+     * hashBytes - computes a hash of the bytes between the position and
+     * the limit of the specified buffer. The hash depends only on the 
+     * bytes, so PersistentHashTable can keep it in its files.
+     */
+    static int hashBytes(ByteBuffer buf) {
+        int h = 0x9747b28c;
+        int i = buf.position();
+        int end = buf.limit();
+        for (; i + 4 <= end; i += 4) {
+            h = (h ^ buf.getInt(i)) * 0x5bd1e995;
+            h ^= (h >>> 15);
+        }
+        for (; i < end; i++) {
+            h = (h ^ buf.get(i)) * 0x5bd1e995;
+        }
+        h ^= (h >>> 13);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 16);
+        return h;
+    }
+
+    /*
+     * keyEquals - returns true if the key record at the specified address
+     * holds exactly the bytes in the specified buffer.
+     */
+    private boolean keyEquals(long address, ByteBuffer key) {
+        ByteBuffer slab = slab(address);
+        int off = offset(address);
+        int length = key.remaining();
+        if (slab.getInt(off + KEY_LENGTH) != length) {
+            return false;
+        }
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            if (slab.getLong(off + KEY_BYTES + i) != key.getLong(i)) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (slab.get(off + KEY_BYTES + i) != key.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * findSlot - returns the index slot that holds the specified key, or,
+     * if the key isn't in the table, -1 - (the slot where it should go).
+     */
+    private int findSlot(ByteBuffer key, int hash) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        int firstRemoved = -1;
+        while (true) {
+            long address = index.getLong(slot * SLOT_SIZE);
+            if (address == EMPTY) {
+                return -1 - ((firstRemoved != -1) ? firstRemoved : slot);
+            } else if (address == REMOVED) {
+                if (firstRemoved == -1) {
+                    firstRemoved = slot;
+                }
+            } else if (index.getInt(slot * SLOT_SIZE + SLOT_HASH) == hash
+                       && keyEquals(address, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /*
+     * writeValue - appends a value record for the specified encoded value
+     * and returns its address.
+     */
+    private long writeValue(ByteBuffer value) {
+        int length = value.remaining();
+        long address = allocate(VALUE_BYTES + length);
+        ByteBuffer slab = slab(address);
+        int off = offset(address);
+        slab.putLong(off + VALUE_NEXT, NONE);
+        slab.putInt(off + VALUE_LENGTH, length);
+        slab.put(off + VALUE_BYTES, value, value.position(), length);
+        liveBytes += valueRecordSize(length);
+        return address;
+    }
+
+    /*
+     * insert - insert the specified (key, value) pair in the hash table.
+     * Always returns true, because the table grows as needed.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean insert(Object key, Object value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        ByteBuffer k = encode(keyCodec, (K) key, keyScratch);
+        keyScratch = k;
+        ByteBuffer v = encode(valueCodec, (V) value, valueScratch);
+        valueScratch = v;
+        int hash = hashBytes(k);
+
+        int slot = findSlot(k, hash);
+        long valueAddress = writeValue(v);
+        if (slot >= 0) {
+            // append the value to the key's list of values
+            long keyAddress = index.getLong(slot * SLOT_SIZE);
+            ByteBuffer keySlab = slab(keyAddress);
+            int keyOff = offset(keyAddress);
+            long last = keySlab.getLong(keyOff + KEY_LAST);
+            slab(last).putLong(offset(last) + VALUE_NEXT, valueAddress);
+            keySlab.putLong(keyOff + KEY_LAST, valueAddress);
+            return true;
+        }
+
+        slot = -1 - slot;
+        int length = k.remaining();
+        long keyAddress = allocate(KEY_BYTES + length);
+        ByteBuffer keySlab = slab(keyAddress);
+        int keyOff = offset(keyAddress);
+        keySlab.putInt(keyOff + KEY_HASH, hash);
+        keySlab.putInt(keyOff + KEY_LENGTH, length);
+        keySlab.putLong(keyOff + KEY_FIRST, valueAddress);
+        keySlab.putLong(keyOff + KEY_LAST, valueAddress);
+        keySlab.put(keyOff + KEY_BYTES, k, k.position(), length);
+        liveBytes += keyRecordSize(length);
+
+        if (index.getLong(slot * SLOT_SIZE) == REMOVED) {
+            numRemoved--;
+        }
+        index.putLong(slot * SLOT_SIZE, keyAddress);
+        index.putInt(slot * SLOT_SIZE + SLOT_HASH, hash);
+        numKeys++;
+
+        if (numKeys + numRemoved > MAX_LOAD * capacity) {
+            int cap = capacity;
+            while (numKeys > MAX_LOAD * cap / 2) {
+                cap *= 2;
+            }
+            rebuild(cap);
+        }
+        return true;
+    }
+
+    /*
+     * search - search for the specified key and return a copy of the
+     * associated collection of values, or null if the key is not in
+     * the table
+     */
+    @SuppressWarnings("unchecked")
+    public Queue<Object> search(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        ByteBuffer k = encode(keyCodec, (K) key, keyScratch);
+        keyScratch = k;
+        int slot = findSlot(k, hashBytes(k));
+        if (slot < 0) {
+            return null;
+        }
+        return decodeValues(index.getLong(slot * SLOT_SIZE), false);
+    }
+
+    /*
+     * remove - remove from the table the entry for the specified key
+     * and return a copy of the associated collection of values, or null
+     * if the key is not in the table
+     */
+    @SuppressWarnings("unchecked")
+    public Queue<Object> remove(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+
+        ByteBuffer k = encode(keyCodec, (K) key, keyScratch);
+        keyScratch = k;
+        int slot = findSlot(k, hashBytes(k));
+        if (slot < 0) {
+            return null;
+        }
+
+        long keyAddress = index.getLong(slot * SLOT_SIZE);
+        Queue<Object> removedVals = decodeValues(keyAddress, true);
+        index.putLong(slot * SLOT_SIZE, REMOVED);
+        numKeys--;
+        numRemoved++;
+
+        // reclaim the space once removed records outweigh the live ones,
+        // but not before there is at least a slab's worth of it, so that
+        // a table with few keys isn't rebuilt on every remove
+        if (deadBytes > Math.max(liveBytes, slabSize)) {
+            rebuild(capacity);
+        }
+        return removedVals;
+    }
+
+    /*
+     * decodeValues - returns a queue of the decoded values of the key
+     * record at the specified address. If dead is true, the records are
+     * also counted as removed.
+     */
+    private Queue<Object> decodeValues(long keyAddress, boolean dead) {
+        ArrayQueue<Object> values = new ArrayQueue<Object>();
+        ByteBuffer keySlab = slab(keyAddress);
+        int keyOff = offset(keyAddress);
+        long bytes = keyRecordSize(keySlab.getInt(keyOff + KEY_LENGTH));
+
+        long address = keySlab.getLong(keyOff + KEY_FIRST);
+        while (address != NONE) {
+            ByteBuffer slab = slab(address);
+            int off = offset(address);
+            int length = slab.getInt(off + VALUE_LENGTH);
+            ByteBuffer view = slab.duplicate();
+            view.limit(off + VALUE_BYTES + length);
+            view.position(off + VALUE_BYTES);
+            values.insert(valueCodec.decode(view));
+            bytes += valueRecordSize(length);
+            address = slab.getLong(off + VALUE_NEXT);
+        }
+
+        if (dead) {
+            liveBytes -= bytes;
+            deadBytes += bytes;
+        }
+        return values;
+    }
+
+    /*
+     * rebuild - copies the records of all live keys into other slabs and
+     * builds a new index with the specified capacity, which leaves out
+     * both the REMOVED slots and the space taken by removed records.
+     * Afterwards, the old slabs become spares -- as many of them as the
+     * live records now take up.
+     */
+    private void rebuild(int cap) {
+        // remember where the live keys are, so that the index can be reused
+        long[] oldKeys = new long[numKeys];
+        int n = 0;
+        for (int i = 0; i < capacity; i++) {
+            long oldKey = index.getLong(i * SLOT_SIZE);
+            if (oldKey != EMPTY && oldKey != REMOVED) {
+                oldKeys[n++] = oldKey;
+            }
+        }
+        ArrayList<ByteBuffer> oldSlabs = slabs;
+        initStorage(cap);
+
+        for (long oldKey : oldKeys) {
+            ByteBuffer oldKeySlab = oldSlabs.get((int) (oldKey >>> 32));
+            int oldKeyOff = offset(oldKey);
+            int hash = oldKeySlab.getInt(oldKeyOff + KEY_HASH);
+            int keyLength = oldKeySlab.getInt(oldKeyOff + KEY_LENGTH);
+
+            // copy the value records, relinking them as we go
+            long first = NONE;
+            long last = NONE;
+            long oldValue = oldKeySlab.getLong(oldKeyOff + KEY_FIRST);
+            while (oldValue != NONE) {
+                ByteBuffer oldSlab = oldSlabs.get((int) (oldValue >>> 32));
+                int oldOff = offset(oldValue);
+                int length = oldSlab.getInt(oldOff + VALUE_LENGTH);
+                long value = allocate(VALUE_BYTES + length);
+                ByteBuffer slab = slab(value);
+                slab.put(offset(value), oldSlab, oldOff, VALUE_BYTES + length);
+                slab.putLong(offset(value) + VALUE_NEXT, NONE);
+                if (last == NONE) {
+                    first = value;
+                } else {
+                    slab(last).putLong(offset(last) + VALUE_NEXT, value);
+                }
+                last = value;
+                liveBytes += valueRecordSize(length);
+                oldValue = oldSlab.getLong(oldOff + VALUE_NEXT);
+            }
+
+            long key = allocate(KEY_BYTES + keyLength);
+            ByteBuffer keySlab = slab(key);
+            keySlab.put(offset(key), oldKeySlab, oldKeyOff, KEY_BYTES + keyLength);
+            keySlab.putLong(offset(key) + KEY_FIRST, first);
+            keySlab.putLong(offset(key) + KEY_LAST, last);
+            liveBytes += keyRecordSize(keyLength);
+
+            int slot = hash & (cap - 1);
+            while (index.getLong(slot * SLOT_SIZE) != EMPTY) {
+                slot = (slot + 1) & (cap - 1);
+            }
+            index.putLong(slot * SLOT_SIZE, key);
+            index.putInt(slot * SLOT_SIZE + SLOT_HASH, hash);
+            numKeys++;
+        }
+
+        for (ByteBuffer oldSlab : oldSlabs) {
+            if (spareSlabs.size() >= slabs.size()) {
+                break;
+            }
+            spareSlabs.add(oldSlab);
+        }
+    }
+
+    /*
+     * getNumKeys - returns the number of keys in the table.
+     */
+    public int getNumKeys() {
+        return numKeys;
+    }
+
+    /*
+     * load - returns the number of keys in the table divided by the
+     * number of index slots.
+     */
+    public double load() {
+        return (double) numKeys / capacity;
+    }
+
+    /*
+     * offHeapBytes - returns the number of bytes of direct memory that
+     * the table is holding on to, for its index and its slabs, spares
+     * included.
+     */
+    public long offHeapBytes() {
+        return (long) capacity * SLOT_SIZE
+               + (long) (slabs.size() + spareSlabs.size()) * slabSize;
+    }
+
+    /* returns the total time that the garbage collectors have taken, in ms */
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /* returns the time in ms of five full collections */
+    private static long fullGcMillis() {
+        long before = gcMillis();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return gcMillis() - before;
+    }
+
+    /*
+     * Self-tests, then a GC comparison: fills this table and a 
+     * ChainedHashTable with the
+     * same (String, Long) pairs and reports how long full collections
+     * take while each of them is alive, and times insert/remove churn
+     * in this table. An optional argument gives the number of keys.
+     */
+    public static void main(String[] args) {
+        System.out.println("(1.1) Testing on insert and search");
+        try {
+            // tiny slabs and a tiny index, so that the records span many 
+            // slabs and the index is rebuilt several times
+            OffHeapHashTable<String, Long> table =
+                new OffHeapHashTable<String, Long>(2, Codec.STRING, Codec.LONG, 64);
+            for (long i = 0; i < 300; i++) {
+                table.insert("key" + i, i);
+            }
+            for (long i = 0; i < 50; i++) {
+                table.insert("key" + i, i + 1000);
+            }
+            boolean ok = true;
+            for (long i = 0; i < 300; i++) {
+                Queue<Object> vals = table.search("key" + i);
+                String expected = (i < 50) ? "{" + i + ", " + (i + 1000) + "}" : "{" + i + "}";
+                ok = ok && vals != null && vals.toString().equals(expected);
+            }
+            // search returns a copy, so changing it leaves the table alone
+            Queue<Object> copy = table.search("key7");
+            copy.remove();
+            String results = table.getNumKeys() + " " + ok + " " + copy + " " 
+                             + table.search("key7") + " " + table.search("key300");
+            String expected = "300 true {1007} {7, 1007} null";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.2) Testing on remove");
+        try {
+            OffHeapHashTable<String, Long> table =
+                new OffHeapHashTable<String, Long>(2, Codec.STRING, Codec.LONG, 64);
+            for (long i = 0; i < 300; i++) {
+                table.insert("key" + i, i);
+                table.insert("key" + i, -i);
+            }
+            long before = table.offHeapBytes();
+            String results = table.remove("key10") + " " + table.remove("key10") + " ";
+            for (long i = 0; i < 300; i += 3) {
+                table.remove("key" + i);
+                table.remove("key" + (i + 1));
+            }
+            // once the removed records outweighed the live ones, the 
+            // live ones were copied into fewer slabs
+            boolean ok = table.offHeapBytes() < before;
+            for (long i = 0; i < 300; i++) {
+                Queue<Object> vals = table.search("key" + i);
+                if (i % 3 == 2) {
+                    ok = ok && vals != null && vals.toString().equals("{" + i + ", " + -i + "}");
+                } else {
+                    ok = ok && vals == null;
+                }
+            }
+            results += table.getNumKeys() + " " + ok;
+            String expected = "{10, -10} null 100 true";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.3) Testing on insert/remove churn");
+        try {
+            // a few live keys and many short-lived ones: once the table
+            // has warmed up, its rebuilds reuse the index and the slabs
+            OffHeapHashTable<String, Long> table =
+                new OffHeapHashTable<String, Long>(16, Codec.STRING, Codec.LONG, 256);
+            for (long i = 0; i < 10; i++) {
+                table.insert("live" + i, i);
+            }
+            for (long i = 0; i < 1000; i++) {
+                table.insert("temp" + i, i);
+                table.remove("temp" + i);
+            }
+            long warm = table.offHeapBytes();
+            boolean ok = true;
+            for (long i = 1000; i < 50000; i++) {
+                table.insert("temp" + i, i);
+                Queue<Object> vals = table.remove("temp" + i);
+                ok = ok && vals.toString().equals("{" + i + "}");
+            }
+            for (long i = 0; i < 10; i++) {
+                Queue<Object> vals = table.search("live" + i);
+                ok = ok && vals != null && vals.toString().equals("{" + i + "}");
+            }
+            String results = table.getNumKeys() + " " + ok + " " 
+                             + (table.offHeapBytes() == warm) + " " 
+                             + table.search("temp49999");
+            String expected = "10 true true null";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+
+        System.out.println("empty heap:       5 full GCs take " + fullGcMillis() + " ms");
+
+        OffHeapHashTable<String, Long> offHeap =
+            new OffHeapHashTable<String, Long>(16, Codec.STRING, Codec.LONG);
+        for (long i = 0; i < n; i++) {
+            offHeap.insert("key" + i, i);
+        }
+        boolean ok = offHeap.search("key7").peek().equals(7L);
+        System.out.println("OffHeapHashTable: 5 full GCs take " + fullGcMillis() + " ms ("
+                           + offHeap.offHeapBytes() / (1024 * 1024) + " MB off-heap, "
+                           + "lookups " + (ok ? "ok" : "FAILED") + ")");
+
+        // insert/remove churn with a few live keys, with the default slabs
+        long start = System.nanoTime();
+        for (long i = 0; i < n / 10; i++) {
+            offHeap.insert("temp" + i, i);
+            offHeap.remove("temp" + i);
+        }
+        long churnNanos = System.nanoTime() - start;
+        System.out.printf("OffHeapHashTable: %d insert/remove pairs take %.1f us each%n",
+                          n / 10, churnNanos / 1000.0 / (n / 10));
+        offHeap = null;
+
+        ChainedHashTable chained = new ChainedHashTable(16, 0.75);
+        for (long i = 0; i < n; i++) {
+            chained.insert("key" + i, i);
+        }
+        System.out.println("ChainedHashTable: 5 full GCs take " + fullGcMillis() + " ms ("
+                           + chained.getNumKeys() + " keys)");
+    }
+}
@@ -4,42 +4,350 @@
  * Computer Science 112, Boston University
  */
 
+import java.util.Collections;
+import java.util.Iterator;
+
 /*
  * A class that implements a hash table that employs open addressing
  * using either linear probing, quadratic probing, or double hashing.
+ *
+ * The keys are hashed by a HashStrategy, which also picks the first cell
+ * to probe and the step used by double hashing. The default strategy,
+ * HashStrategy.IDENTITY, starts at key.hashCode() % the table length.
+ *
+ * The cells of the table are kept in parallel arrays (see Slots): the 
+ * hashes of the keys in an int[], the keys in an Object[], and the 
+ * values in another Object[]. A probe compares the hashes, which sit
+ * next to each other in memory, and calls equals on a key only when its
+ * hash matches, so that most probes never touch a key object. A key 
+ * with a single value keeps that value in its cell; a queue of values 
+ * is made only when a second value arrives, and search hands out a view
+ * of the key's values (see ValueView) rather than a queue.
+ *
+ * The table grows instead of overflowing. It counts its live keys and
+ * its removed cells, and when the two together pass maxLoad times the
+ * size of the table, it rebuilds the table: at twice the size if the
+ * live keys alone take up more than half of that load, and at the same
+ * size otherwise, which clears out the removed cells. The rebuild is
+ * incremental. The previous cells live on in oldTable, and each insert
+ * or remove moves a few of them into the new table, so no single call
+ * pays for the whole rebuild. Until the move is done, a key may be in 
+ * either table.
+ *
+ * With ROBIN_HOOD probing, the probe sequence is linear, and an entry's
+ * distance from the cell where its probe sequence starts is computed 
+ * from its cached hash. An insert that reaches an entry closer to
+ * its start than the new one takes that cell and moves the displaced
+ * entry onward, which keeps the distances (and so the search times) 
+ * close to the average. A search can stop as soon as it reaches an 
+ * entry closer to its start than the key would be, and remove shifts 
+ * the rest of the cluster back instead of leaving a removed cell. Only
+ * the new table is kept in Robin Hood order; while a rebuild is in 
+ * progress, oldTable is searched with plain linear probing.
+ *
+ * With SWISS probing, the table also keeps one control byte per cell:
+ * EMPTY, DELETED, or 7 bits of the (mixed) hash of the cell's key.
+ * The cells are probed in aligned groups of 8, and the 8 control bytes
+ * of a group are read as one long, so a single comparison (see
+ * matchTag) finds the cells of the group whose tag matches the key's.
+ * Only those cells have their hashes and keys compared, so most 
+ * searches call equals at most once, and a search stops at the first 
+ * group that has an EMPTY cell. The table length is a power of two of 
+ * at least 8, and the groups are visited in triangular order, which 
+ * reaches every group.
  */
 public class OpenHashTable implements HashTable {
-    /* Private inner class for an entry in the hash table */
-    private class Entry {
+    /*
+     * Private inner class for the cells of a hash table, in parallel 
+     * arrays. Cell i is empty if keys[i] is null and removed if keys[i]
+     * is REMOVED; otherwise it holds keys[i], whose hash is 
+     * hashes[i] and whose values are in values[i]: the value itself while
+     * the key has only one, and a Values queue of all of them after that.
+     */
+    private static class Slots {
+        private int[] hashes;
+        private Object[] keys;
+        private Object[] values;
+        private byte[] ctrl;       // the control bytes, for SWISS only
+        private int length;
+        
+        private Slots(int length, boolean swiss) {
+            hashes = new int[length];
+            keys = new Object[length];
+            values = new Object[length];
+            if (swiss) {
+                ctrl = new byte[length];
+                java.util.Arrays.fill(ctrl, EMPTY);
+            }
+            this.length = length;
+        }
+        
+        /* puts the specified key, hash and values in cell i */
+        private void set(int i, Object key, int hash, Object vals) {
+            keys[i] = key;
+            hashes[i] = hash;
+            values[i] = vals;
+            if (ctrl != null) {
+                ctrl[i] = (byte) (swissHash(hash) & 0x7f);
+            }
+        }
+        
+        /* marks cell i as removed */
+        private void remove(int i) {
+            keys[i] = REMOVED;
+            values[i] = null;
+            if (ctrl != null) {
+                // If the group has an EMPTY cell, no probe sequence has 
+                // ever passed through it, so the cell can be EMPTY too.
+                if (emptyCells(group(ctrl, i & ~7)) != 0) {
+                    keys[i] = null;
+                    ctrl[i] = EMPTY;
+                } else {
+                    ctrl[i] = DELETED;
+                }
+            }
+        }
+        
+        /* returns true if cell i holds a key */
+        private boolean isLive(int i) {
+            return keys[i] != null && keys[i] != REMOVED;
+        }
+    }
+    
+    /*
+     * Private inner class for the values of a key that has more than one.
+     * Most keys have just one value, which their cell holds without a 
+     * queue.
+     */
+    private static class Values extends ArrayQueue<Object> {
+        private Values() {
+        }
+        
+        private Values(Object first) {
+            insert(first);
+        }
+    }
+    
+    /*
+     * Private inner class for the Queue of values that search returns: a
+     * view of the values of its key, so that reading the values of a key
+     * with one value doesn't give it a queue. Cells move during Robin 
+     * Hood shifts and rebuilds, so the view looks its key up each time it
+     * is used. Changes made through the view are changes to the table;
+     * once the key has been removed the view is empty, and inserting 
+     * through it puts the key back.
+     */
+    private class ValueView implements Queue<Object> {
         private Object key;
-        private LLQueue<Object> values;    // all of the values with this key
+        private int hash;
         
-        private Entry(Object key, Object value) {
+        private ValueView(Object key, int hash) {
             this.key = key;
-            values = new LLQueue<Object>();
-            values.insert(value);
+            this.hash = hash;
+        }
+        
+        public boolean insert(Object item) {
+            return OpenHashTable.this.insert(key, hash, item);
+        }
+        
+        public Object remove() {
+            Object vals = valuesOf(key, hash);
+            if (vals == NOT_FOUND) {
+                return null;
+            } else if (vals instanceof Values) {
+                return ((Values) vals).remove();
+            }
+            setValues(key, hash, new Values());
+            return vals;
+        }
+        
+        public Object peek() {
+            Object vals = valuesOf(key, hash);
+            if (vals == NOT_FOUND) {
+                return null;
+            }
+            return (vals instanceof Values) ? ((Values) vals).peek() : vals;
+        }
+        
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+        
+        public boolean isFull() {
+            return false;
+        }
+        
+        public int size() {
+            Object vals = valuesOf(key, hash);
+            if (vals == NOT_FOUND) {
+                return 0;
+            }
+            return (vals instanceof Values) ? ((Values) vals).size() : 1;
+        }
+        
+        public Iterator<Object> iterator() {
+            Object vals = valuesOf(key, hash);
+            if (vals == NOT_FOUND) {
+                return Collections.emptyIterator();
+            } else if (vals instanceof Values) {
+                return ((Values) vals).iterator();
+            }
+            return Collections.singleton(vals).iterator();
+        }
+        
+        public boolean equals(Object other) {
+            if (!(other instanceof OpenHashTable.ValueView)) {
+                return false;
+            }
+            ValueView view = (ValueView) other;
+            return view.table() == OpenHashTable.this && view.key.equals(key);
+        }
+        
+        public int hashCode() {
+            return hash;
+        }
+        
+        public String toString() {
+            Object vals = valuesOf(key, hash);
+            if (vals == NOT_FOUND) {
+                return "{}";
+            }
+            return (vals instanceof Values) ? vals.toString() : "{" + vals + "}";
+        }
+        
+        private OpenHashTable table() {
+            return OpenHashTable.this;
+        }
+    }
+    
+    /*
+     * Private inner class for a cell in the layout that Slots replaced,
+     * in which the table was an array of references to Entry objects.
+     * main fills an array of them to compare the memory of the layouts.
+     */
+    private static class Entry {
+        private Object key;
+        private Object values;     // the only value, or a Values queue
+        private int dist;          // the distance used by ROBIN_HOOD
+        
+        private Entry(Object key, Object values) {
+            this.key = key;
+            this.values = values;
+            dist = 0;
         }
     }
     
+    // the key in every removed cell, and in every cell of oldTable that 
+    // has been moved to the new table
+    private static final Object REMOVED = new Object();
+    
+    // what valuesOf returns for a key that isn't in the table
+    private static final Object NOT_FOUND = new Object();
+    
     // possible types of probing
     public static final int LINEAR = 0;
     public static final int QUADRATIC = 1;
     public static final int DOUBLE_HASHING = 2;
-    public static final int NUM_PROBE_TYPES = 3;
+    public static final int ROBIN_HOOD = 3;
+    public static final int SWISS = 4;
+    public static final int NUM_PROBE_TYPES = 5;
+    
+    // the control bytes of SWISS cells that hold no key; the control
+    // byte of a cell with a key is 7 bits of its hash, with the top bit 0
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xfe;
     
-    private Entry[] table;             // the hash table itself
+    // constants for working on all 8 bytes of a long at once
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    
+    // reads 8 control bytes as a long, with the first in the low bits
+    private static final java.lang.invoke.VarHandle GROUP = 
+        java.lang.invoke.MethodHandles.byteArrayViewVarHandle(long[].class, 
+                                                              java.nio.ByteOrder.LITTLE_ENDIAN);
+    
+    // default load factor (of live keys and removed cells) that 
+    // triggers a rebuild
+    public static final double DEFAULT_MAX_LOAD = 0.75;
+    
+    // number of cells of oldTable moved by each insert or remove
+    private static final int MIGRATE_STEP = 4;
+    
+    // the number of elements in the histogram of probe counts
+    private static final int HISTOGRAM_SIZE = 64;
+    
+    private Slots table;               // the hash table itself
     private int probeType = LINEAR;    // the type of probing
+    private double maxLoad;            // the load factor that triggers a rebuild
+    private int numKeys;               // the number of keys, in both tables
+    private int numRemoved;            // the number of removed cells in table
+    
+    // While a rebuild is in progress, the cells of the previous table
+    // live on in oldTable. Cells below migrateIndex have already been
+    // moved into table.
+    private Slots oldTable;
+    private int migrateIndex;
+    
+    private HashStrategy strategy;     // hashes the keys and picks the cells to probe
+    
+    // When counting is true, every insert, search and remove adds the
+    // number of probes it made to the counts below; see setCounting().
+    // opProbes counts the probes of the operation in progress.
+    private boolean counting;
+    private int opProbes;
+    private long[] opCounts;           // indexed by ProbeStats.slot()
+    private long[] probeTotals;
+    private int[] maxProbes;
+    private long[] probeHistogram;
     
     public OpenHashTable(int size, int probeType) {
+        this(size, probeType, DEFAULT_MAX_LOAD);
+    }
+    
+    /*
+     * Constructor for a hash table of the specified size that uses the
+     * specified type of probing and is rebuilt whenever its live keys 
+     * and removed cells pass maxLoad times its size.
+     */
+    public OpenHashTable(int size, int probeType, double maxLoad) {
+        this(size, probeType, maxLoad, HashStrategy.IDENTITY);
+    }
+    
+    /*
+     * Constructor for a hash table that also takes the strategy that 
+     * hashes its keys.
+     */
+    public OpenHashTable(int size, int probeType, double maxLoad, HashStrategy strategy) {
         if (size <= 0) {
             throw new IllegalArgumentException("size must be positive");
         }
         if (probeType < 0 || probeType >= NUM_PROBE_TYPES) {
             throw new IllegalArgumentException("invalid probeType: " + probeType);
         }
+        if (!(maxLoad > 0 && maxLoad < 1)) {
+            throw new IllegalArgumentException("invalid maxLoad: " + maxLoad);
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy must be non-null");
+        }
         
-        table = new Entry[size];
+        if (probeType == SWISS) {
+            int length = 8;
+            while (length < size) {
+                length *= 2;
+            }
+            size = length;
+        }
         this.probeType = probeType;
+        table = new Slots(size, probeType == SWISS);
+        this.maxLoad = maxLoad;
+        numKeys = 0;
+        numRemoved = 0;
+        oldTable = null;
+        migrateIndex = 0;
+        this.strategy = strategy;
+        counting = false;
+        clearCounts();
     }
     
     /*
@@ -52,21 +360,27 @@ public class OpenHashTable implements HashTable {
     
     /* first hash function */
     public int h1(Object key) {
-        int h1 = key.hashCode() % table.length;
-        if (h1 < 0) {
-            h1 += table.length;
-        }
-        return h1;
+        return h1(strategy.hash(key), table.length);
     }
     
     /* second hash function */
     public int h2(Object key) {
-        int h2 = key.hashCode() % 5;
-        if (h2 < 0) {
-            h2 += 11;
-        }
-        h2 += 5;
-        return h2;
+        return h2(strategy.hash(key), table.length);
+    }
+    
+    /* 
+     * The two hash functions above, for a key with the specified hash, 
+     * so that the strategy hashes each key only once per operation. 
+     * They take the length of the table being probed, which may be 
+     * oldTable during a rebuild. The step returned by h2 has no factor
+     * in common with the length, so double hashing reaches every cell.
+     */
+    private int h1(int hash, int length) {
+        return strategy.index(hash, length);
+    }
+    
+    private int h2(int hash, int length) {
+        return strategy.step(hash, length);
     }
     
     /* 
@@ -78,7 +392,7 @@ public class OpenHashTable implements HashTable {
     private int probeIncr(int numChecked, int h2) {
        if (numChecked <= 0) {
           return 0;
-       } else if (probeType == LINEAR) {
+       } else if (probeType == LINEAR || probeType == ROBIN_HOOD) {
            return 1;
        } else if (probeType == QUADRATIC) {
            return (2*numChecked - 1);
@@ -87,49 +401,212 @@ public class OpenHashTable implements HashTable {
        }
     }
     
+    /* 
+     * matches - returns true if cell i of the specified table holds the
+     * specified key, comparing the hashes before calling equals.
+     */
+    private static boolean matches(Slots tab, int i, Object key, int hash) {
+        return tab.hashes[i] == hash && tab.keys[i] != REMOVED 
+               && key.equals(tab.keys[i]);
+    }
+    
     /*
-     * probe - attempt to find a slot in the hash table for the specified key.
+     * probe - attempt to find the specified key in the specified table.
      *
-     * If key is currently in the table, it returns the index of the entry.
-     * If key isn't in the table, it returns the index of the first empty cell
-     * in the table.
+     * If key is in the table, it returns the index of its cell.
+     * If key isn't in the table, it returns the index of the first empty 
+     * cell in the table.
      * If overflow occurs, it returns -1.
      */
-    private int probe(Object key) {
-        int i = h1(key);    // first hash function
-        int h2 = h2(key);   // second hash function
+    private int probe(Slots tab, Object key, int hash) {
+        int i = h1(hash, tab.length);    // first hash function
+        int h2 = (probeType == DOUBLE_HASHING) ? h2(hash, tab.length) : 0;
         int numChecked = 1;
         
         // keep probing until we get an empty position or a match
-        while (table[i] != null && !key.equals(table[i].key)) {
-            if (numChecked == table.length) {
-                return -1;
+        while (tab.keys[i] != null && !matches(tab, i, key, hash)) {
+            if (numChecked == tab.length) {
+                i = -1;
+                break;
             }
             
-            i = (i + probeIncr(numChecked, h2)) % table.length;
+            i = (i + probeIncr(numChecked, h2)) % tab.length;
             numChecked++;
         }
         
+        if (counting) {
+            opProbes += numChecked;
+        }
         return i;
     }
     
     /*
-     * insert - insert the specified (key, value) pair in the hash table.
-     * Returns true if the pair can be added and false if there is overflow.
+     * find - returns the index of the cell for the specified key in the
+     * specified table, or -1 if the key isn't there.
      */
-    public boolean insert(Object key, Object value) {
-        if (key == null) {
-            throw new IllegalArgumentException("key must be non-null");
+    private int find(Slots tab, Object key, int hash) {
+        if (probeType == SWISS) {
+            return swissFind(tab, key, hash);
+        }
+        int i = probe(tab, key, hash);
+        if (i == -1 || tab.keys[i] == null) {
+            return -1;
+        }
+        return i;
+    }
+    
+    /*
+     * dist - returns the distance of the key in cell i of table from the
+     * cell where its probe sequence starts.
+     */
+    private int dist(int i) {
+        int d = i - h1(table.hashes[i], table.length);
+        return (d < 0) ? d + table.length : d;
+    }
+    
+    /*
+     * findInTable - returns the index of the cell for the specified key
+     * in table (not oldTable), or -1 if the key isn't there.
+     */
+    private int findInTable(Object key, int hash) {
+        if (probeType != ROBIN_HOOD) {
+            return find(table, key, hash);
+        }
+        
+        int i = h1(hash, table.length);
+        int dist = 0;
+        int found = -1;
+        while (table.keys[i] != null) {
+            // if the key were here, it would have displaced this entry
+            if (dist(i) < dist) {
+                break;
+            }
+            if (matches(table, i, key, hash)) {
+                found = i;
+                break;
+            }
+            i = (i + 1) % table.length;
+            dist++;
         }
         
-        int i = h1(key); 
-        int h2 = h2(key);
+        if (counting) {
+            opProbes += dist + 1;
+        }
+        return found;
+    }
+    
+    /*
+     * swissHash - mixes the bits of a hash for SWISS probing, whose 
+     * tags come from the low 7 bits and whose first group comes from the
+     * rest.
+     */
+    private static int swissHash(int hash) {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+    
+    /* returns the 8 control bytes that start at index i */
+    private static long group(byte[] ctrl, int i) {
+        return (long) GROUP.get(ctrl, i);
+    }
+    
+    /*
+     * matchTag - returns a long with the top bit set in each byte of the 
+     * group whose control byte may be the specified tag. A byte right 
+     * after a real match can be a false positive, which the caller's
+     * comparison of the hashes rules out.
+     */
+    private static long matchTag(long group, int tag) {
+        long x = group ^ (LOW_BITS * tag);
+        return (x - LOW_BITS) & ~x & HIGH_BITS;
+    }
+    
+    /* returns a long with the top bit set in each EMPTY byte of the group */
+    private static long emptyCells(long group) {
+        return group & ~(group << 6) & HIGH_BITS;
+    }
+    
+    /* returns a long with the top bit set in each EMPTY or DELETED byte */
+    private static long freeCells(long group) {
+        return group & HIGH_BITS;
+    }
+    
+    /*
+     * swissFind - returns the index of the cell for the specified key in
+     * the specified SWISS table, or -1 if the key isn't there. Each group
+     * examined counts as one probe.
+     */
+    private int swissFind(Slots tab, Object key, int hash) {
+        int h = swissHash(hash);
+        int mask = (tab.length >>> 3) - 1;
+        int g = (h >>> 7) & mask;
+        int found = -1;
+        int step = 1;
+        search:
+        for (; step <= mask + 1; step++) {
+            long group = group(tab.ctrl, g << 3);
+            for (long m = matchTag(group, h & 0x7f); m != 0; m &= m - 1) {
+                int i = (g << 3) + (Long.numberOfTrailingZeros(m) >>> 3);
+                if (matches(tab, i, key, hash)) {
+                    found = i;
+                    break search;
+                }
+            }
+            if (emptyCells(group) != 0) {
+                break;
+            }
+            g = (g + step) & mask;
+        }
+        
+        if (counting) {
+            opProbes += Math.min(step, mask + 1);
+        }
+        return found;
+    }
+    
+    /*
+     * swissFreeCell - returns the index of the first EMPTY or DELETED cell
+     * in the probe sequence of the specified hash in table, or -1 if
+     * there is none.
+     */
+    private int swissFreeCell(int hash) {
+        int h = swissHash(hash);
+        int mask = (table.length >>> 3) - 1;
+        int g = (h >>> 7) & mask;
+        for (int step = 1; step <= mask + 1; step++) {
+            long free = freeCells(group(table.ctrl, g << 3));
+            if (free != 0) {
+                if (counting) {
+                    opProbes += step;
+                }
+                return (g << 3) + (Long.numberOfTrailingZeros(free) >>> 3);
+            }
+            g = (g + step) & mask;
+        }
+        if (counting) {
+            opProbes += mask + 1;
+        }
+        return -1;
+    }
+    
+    /*
+     * slotFor - returns the index in table of the cell for the specified
+     * key or, if the key isn't there, of the first removed or empty cell
+     * in its probe sequence. Returns -1 if there is no such cell.
+     */
+    private int slotFor(Object key, int hash) {
+        if (probeType == SWISS) {
+            int i = swissFind(table, key, hash);
+            return (i != -1) ? i : swissFreeCell(hash);
+        }
+        int i = h1(hash, table.length); 
+        int h2 = (probeType == DOUBLE_HASHING) ? h2(hash, table.length) : 0;
         int numChecked = 1;
         int firstRemoved = -1;
         
-        while (table[i] != null && !key.equals(table[i].key)) {
+        while (table.keys[i] != null && !matches(table, i, key, hash)) {
             // record the index of the first removed cell we see
-            if (table[i].key == null && firstRemoved == -1) {
+            if (table.keys[i] == REMOVED && firstRemoved == -1) {
                 firstRemoved = i;
             }
             
@@ -141,19 +618,157 @@ public class OpenHashTable implements HashTable {
             numChecked++;
         }
         
-        if (table[i] != null && key.equals(table[i].key)) {
-            table[i].values.insert(value);
+        if (counting) {
+            opProbes += numChecked;
+        }
+        if (table.isLive(i) && matches(table, i, key, hash)) {
+            return i;
         } else if (firstRemoved != -1) {
-            table[firstRemoved] = new Entry(key, value);
-        } else if (table[i] == null) {
-            table[i] = new Entry(key, value);
+            return firstRemoved;
+        } else if (table.keys[i] == null) {
+            return i;
         } else {
-            return false;
+            return -1;
+        }
+    }
+    
+    /*
+     * insert - insert the specified (key, value) pair in the hash table.
+     * Always returns true, because the table grows as needed.
+     */
+    public boolean insert(Object key, Object value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+        return insert(key, strategy.hash(key), value);
+    }
+    
+    /*
+     * insert - does the work of insert for a key with the specified
+     * hash, and counts its probes if counting is on.
+     */
+    private boolean insert(Object key, int hash, Object value) {
+        migrateStep();
+        opProbes = 0;
+        boolean found = insertHashed(key, hash, value);
+        if (counting) {
+            record(ProbeStats.INSERT, found);
         }
-        
         return true;
     }
     
+    /*
+     * insertHashed - inserts the (key, value) pair for a key with the
+     * specified hash. Returns true if the key was already in the table,
+     * and false if it was added.
+     */
+    private boolean insertHashed(Object key, int hash, Object value) {
+        if (oldTable != null) {
+            int j = find(oldTable, key, hash);
+            if (j != -1) {
+                // the key hasn't been moved yet; it will take its values along
+                addValue(oldTable, j, value);
+                return true;
+            }
+        }
+        
+        if (probeType == ROBIN_HOOD) {
+            int i = findInTable(key, hash);
+            if (i != -1) {
+                addValue(table, i, value);
+                return true;
+            }
+            robinHoodPlace(key, hash, inline(value));
+            numKeys++;
+        } else {
+            int i = slotFor(key, hash);
+            while (i == -1) {
+                // the key's probe sequence has no free cell, however empty 
+                // the table is; only a bigger table will do
+                rebuildTable(2 * table.length);
+                i = slotFor(key, hash);
+            }
+            
+            if (table.isLive(i)) {
+                addValue(table, i, value);
+                return true;
+            }
+            
+            if (table.keys[i] == REMOVED) {
+                numRemoved--;
+            }
+            table.set(i, key, hash, inline(value));
+            numKeys++;
+        }
+        
+        if (oldTable == null && numKeys + numRemoved > maxLoad * table.length) {
+            if (numKeys > maxLoad * table.length / 2) {
+                startResize(2 * table.length);
+            } else {
+                startResize(table.length);
+            }
+        }
+        return false;
+    }
+    
+    /*
+     * inline - returns what a cell holds for a key whose only value is the
+     * specified one: the value itself, unless it is a Values queue, which
+     * would be taken for the key's queue of values.
+     */
+    private static Object inline(Object value) {
+        if (value instanceof Values) {
+            return new Values(value);
+        }
+        return value;
+    }
+    
+    /* addValue - adds a value to the values of the key in cell i of tab */
+    private static void addValue(Slots tab, int i, Object value) {
+        if (tab.values[i] instanceof Values) {
+            ((Values) tab.values[i]).insert(value);
+        } else {
+            Values vals = new Values(tab.values[i]);
+            vals.insert(value);
+            tab.values[i] = vals;
+        }
+    }
+    
+    /*
+     * valuesOf - returns what the table holds for the key with the 
+     * specified hash: its only value, its Values, or NOT_FOUND if it 
+     * isn't in the table.
+     */
+    private Object valuesOf(Object key, int hash) {
+        int i = findInTable(key, hash);
+        if (i != -1) {
+            return table.values[i];
+        }
+        if (oldTable != null) {
+            i = find(oldTable, key, hash);
+            if (i != -1) {
+                return oldTable.values[i];
+            }
+        }
+        return NOT_FOUND;
+    }
+    
+    /* setValues - replaces what the table holds for a key that is in it */
+    private void setValues(Object key, int hash, Object vals) {
+        int i = findInTable(key, hash);
+        if (i != -1) {
+            table.values[i] = vals;
+        } else {
+            oldTable.values[find(oldTable, key, hash)] = vals;
+        }
+    }
+    
+    /* returns the values held in cell i of tab, as a queue */
+    private static Queue<Object> removedValues(Slots tab, int i) {
+        Object vals = tab.values[i];
+        return (vals instanceof Values) ? (Values) vals : new Values(vals);
+    }
+    
     /*
      * search - search for the specified key and return the
      * associated collection of values, or null if the key 
@@ -164,13 +779,29 @@ public class OpenHashTable implements HashTable {
             throw new IllegalArgumentException("key must be non-null");
         }
         
-        int i = probe(key);
-        
-        if (i == -1 || table[i] == null) {
-            return null;
-        } else {
-            return table[i].values;
+        return search(key, strategy.hash(key));
+    }
+    
+    /*
+     * search - does the work of search for a key with the specified
+     * hash, and counts its probes if counting is on.
+     */
+    private Queue<Object> search(Object key, int hash) {
+        opProbes = 0;
+        Queue<Object> vals = searchHashed(key, hash);
+        if (counting) {
+            record(ProbeStats.SEARCH, vals != null);
+        }
+        return vals;
+    }
+    
+    /* searchHashed - searches for a key with the specified hash */
+    private Queue<Object> searchHashed(Object key, int hash) {
+        if (findInTable(key, hash) != -1
+            || (oldTable != null && find(oldTable, key, hash) != -1)) {
+            return new ValueView(key, hash);
         }
+        return null;
     }
     
     /* 
@@ -183,14 +814,952 @@ public class OpenHashTable implements HashTable {
             throw new IllegalArgumentException("key must be non-null");
         }
             
-        int i = probe(key);
-        if (i == -1 || table[i] == null) {
-            return null;
+        return remove(key, strategy.hash(key));
+    }
+    
+    /*
+     * remove - does the work of remove for a key with the specified
+     * hash, and counts its probes if counting is on.
+     */
+    private Queue<Object> remove(Object key, int hash) {
+        migrateStep();
+        opProbes = 0;
+        Queue<Object> vals = removeHashed(key, hash);
+        if (counting) {
+            record(ProbeStats.REMOVE, vals != null);
+        }
+        return vals;
+    }
+    
+    /* removeHashed - removes the entry for a key with the specified hash */
+    private Queue<Object> removeHashed(Object key, int hash) {
+        int i = findInTable(key, hash);
+        if (i != -1) {
+            Queue<Object> removedVals = removedValues(table, i);
+            if (probeType == ROBIN_HOOD) {
+                robinHoodShift(i);
+            } else {
+                table.remove(i);
+                if (table.keys[i] == REMOVED) {
+                    numRemoved++;
+                }
+            }
+            numKeys--;
+            return removedVals;
+        }
+        
+        if (oldTable != null) {
+            i = find(oldTable, key, hash);
+            if (i != -1) {
+                Queue<Object> removedVals = removedValues(oldTable, i);
+                oldTable.remove(i);
+                numKeys--;
+                return removedVals;
+            }
+        }
+        return null;
+    }
+    
+    /*
+     * getNumKeys - returns the number of keys in the table.
+     */
+    public int getNumKeys() {
+        return numKeys;
+    }
+    
+    /*
+     * load - returns the number of keys in the table divided by the
+     * size of the table.
+     */
+    public double load() {
+        return (double) numKeys / table.length;
+    }
+    
+    /*
+     * Public static nested class for the probe counts of a table, and a 
+     * snapshot of its cells, returned by stats(). A probe is one cell 
+     * examined (one group of 8 cells for SWISS), including the empty 
+     * cell that ends an unsuccessful search. Each operation is counted 
+     * as a hit or a miss: an insert hits if its key was already in the
+     * table, and a search or remove hits if it finds its key.
+     */
+    public static class ProbeStats {
+        // the kinds of operation, for the methods that take one
+        public static final int INSERT = 0;
+        public static final int SEARCH = 1;
+        public static final int REMOVE = 2;
+        
+        private long[] counts;
+        private long[] probeTotals;
+        private int[] maxProbes;
+        private long[] histogram;
+        private int numCells;
+        private int numKeys;
+        private int removedCells;
+        private int longestCluster;
+        
+        /* returns the index in the count arrays for an operation and outcome */
+        private static int slot(int op, boolean hit) {
+            if (op < INSERT || op > REMOVE) {
+                throw new IllegalArgumentException("invalid operation: " + op);
+            }
+            return 2 * op + (hit ? 1 : 0);
+        }
+        
+        /* getCount - returns the number of counted hits or misses of op */
+        public long getCount(int op, boolean hit) {
+            return counts[slot(op, hit)];
+        }
+        
+        /* getMeanProbes - returns the average probes of those operations */
+        public double getMeanProbes(int op, boolean hit) {
+            int k = slot(op, hit);
+            return (counts[k] == 0) ? 0.0 : (double) probeTotals[k] / counts[k];
+        }
+        
+        /* getMaxProbes - returns the most probes made by one of them */
+        public int getMaxProbes(int op, boolean hit) {
+            return maxProbes[slot(op, hit)];
+        }
+        
+        /*
+         * getHistogram - returns an array whose element i is the number of
+         * counted operations (of all kinds) that made exactly i probes; 
+         * the last element also counts the operations that made more.
+         */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+        
+        /* getNumCells - returns the number of cells, old and new */
+        public int getNumCells() {
+            return numCells;
+        }
+        
+        public int getNumKeys() {
+            return numKeys;
+        }
+        
+        /*
+         * getRemovedCells - returns the number of removed cells, which 
+         * probes must pass over, including the cells that a rebuild in
+         * progress has already moved.
+         */
+        public int getRemovedCells() {
+            return removedCells;
+        }
+        
+        /* getTombstoneRatio - returns the fraction of the cells that are removed */
+        public double getTombstoneRatio() {
+            return (numCells == 0) ? 0.0 : (double) removedCells / numCells;
+        }
+        
+        /*
+         * getLongestCluster - returns the length of the longest run of 
+         * adjacent cells that are not empty (live or removed), which 
+         * bounds the cost of a linear probe sequence.
+         */
+        public int getLongestCluster() {
+            return longestCluster;
+        }
+        
+        public String toString() {
+            String[] names = {"insert", "search", "remove"};
+            String s = "cells=" + numCells + " keys=" + numKeys 
+                       + String.format(" tombstones=%.3f", getTombstoneRatio())
+                       + " longestCluster=" + longestCluster;
+            for (int op = INSERT; op <= REMOVE; op++) {
+                s += String.format(" %s hit=%.2f/%d miss=%.2f/%d", names[op],
+                                   getMeanProbes(op, true), getMaxProbes(op, true),
+                                   getMeanProbes(op, false), getMaxProbes(op, false));
+            }
+            return s;
+        }
+    }
+    
+    /*
+     * setCounting - turns on or off the counting of the probes made by
+     * insert, search and remove (and their batch forms), and resets the
+     * counts to 0. The counts are reported by stats(). Counting is off by
+     * default; when it is off, each operation pays only for a store and
+     * the tests of a boolean.
+     */
+    public void setCounting(boolean counting) {
+        this.counting = counting;
+        clearCounts();
+    }
+    
+    /* clearCounts - sets all of the probe counts to 0 */
+    private void clearCounts() {
+        opCounts = new long[6];
+        probeTotals = new long[6];
+        maxProbes = new int[6];
+        probeHistogram = new long[HISTOGRAM_SIZE];
+    }
+    
+    /*
+     * record - adds the probes of the operation that just finished to the
+     * counts for its kind and outcome.
+     */
+    private void record(int op, boolean hit) {
+        int k = ProbeStats.slot(op, hit);
+        opCounts[k]++;
+        probeTotals[k] += opProbes;
+        maxProbes[k] = Math.max(maxProbes[k], opProbes);
+        probeHistogram[Math.min(opProbes, HISTOGRAM_SIZE - 1)]++;
+    }
+    
+    /*
+     * stats - returns a ProbeStats with the counts so far and the state
+     * of the cells as they are now, including those of a rebuild in 
+     * progress. Takes time proportional to the number of cells.
+     */
+    public ProbeStats stats() {
+        ProbeStats stats = new ProbeStats();
+        stats.counts = opCounts.clone();
+        stats.probeTotals = probeTotals.clone();
+        stats.maxProbes = maxProbes.clone();
+        stats.histogram = probeHistogram.clone();
+        stats.numKeys = numKeys;
+        cellStats(table, stats);
+        if (oldTable != null) {
+            cellStats(oldTable, stats);
+        }
+        return stats;
+    }
+    
+    /*
+     * cellStats - adds the cells of the specified table to stats: their 
+     * number, the removed ones, and the longest cluster, which may wrap 
+     * around from the end of the table to the start.
+     */
+    private static void cellStats(Slots tab, ProbeStats stats) {
+        stats.numCells += tab.length;
+        int firstEmpty = -1;
+        for (int i = 0; i < tab.length; i++) {
+            if (tab.keys[i] == REMOVED) {
+                stats.removedCells++;
+            } else if (tab.keys[i] == null && firstEmpty == -1) {
+                firstEmpty = i;
+            }
+        }
+        if (firstEmpty == -1) {
+            stats.longestCluster = Math.max(stats.longestCluster, tab.length);
+            return;
+        }
+        
+        // start at an empty cell, so that no cluster is split in two
+        int run = 0;
+        for (int n = 1; n <= tab.length; n++) {
+            int i = (firstEmpty + n) % tab.length;
+            if (tab.keys[i] == null) {
+                run = 0;
+            } else {
+                run++;
+                stats.longestCluster = Math.max(stats.longestCluster, run);
+            }
+        }
+    }
+    
+    /*
+     * startResize - starts a rebuild into a new table of the specified
+     * length. The caller must make sure that no rebuild is in progress.
+     */
+    private void startResize(int length) {
+        oldTable = table;
+        migrateIndex = 0;
+        table = new Slots(length, probeType == SWISS);
+        numRemoved = 0;
+    }
+    
+    /*
+     * migrateStep - moves the next few cells of oldTable, if a rebuild is
+     * in progress, and finishes the rebuild after the last one.
+     */
+    private void migrateStep() {
+        if (oldTable == null) {
+            return;
+        }
+        int end = Math.min(migrateIndex + MIGRATE_STEP, oldTable.length);
+        while (migrateIndex < end) {
+            int i = migrateIndex;
+            if (oldTable.isLive(i)) {
+                place(oldTable.keys[i], oldTable.hashes[i], oldTable.values[i]);
+                // leave a removed marker, so that the probe sequences of 
+                // the keys that are still in oldTable aren't cut short
+                oldTable.remove(i);
+            }
+            migrateIndex++;
+        }
+        if (migrateIndex == oldTable.length) {
+            oldTable = null;
+            migrateIndex = 0;
+        }
+    }
+    
+    /*
+     * finishResize - moves all of the remaining cells of oldTable.
+     */
+    private void finishResize() {
+        while (oldTable != null) {
+            migrateStep();
+        }
+    }
+    
+    /*
+     * place - puts the specified key, which isn't in table, and its hash
+     * code and values into the first removed or empty cell of its probe 
+     * sequence in table.
+     */
+    private void place(Object key, int hash, Object vals) {
+        if (probeType == ROBIN_HOOD) {
+            robinHoodPlace(key, hash, vals);
+            return;
+        }
+        int i = slotFor(key, hash);
+        while (i == -1) {
+            rebuildTable(2 * table.length);
+            i = slotFor(key, hash);
+        }
+        if (table.keys[i] == REMOVED) {
+            numRemoved--;
+        }
+        table.set(i, key, hash, vals);
+    }
+    
+    /*
+     * robinHoodPlace - puts the specified key, which isn't in table, into
+     * table in Robin Hood order: whenever it reaches an entry that is 
+     * closer to the start of its probe sequence, the two trade places and
+     * the displaced entry continues the search for a cell.
+     */
+    private void robinHoodPlace(Object key, int hash, Object vals) {
+        if (numKeys >= table.length) {
+            // there may be no empty cell left
+            rebuildTable(2 * table.length);
         }
         
-        LLQueue<Object> removedVals = table[i].values;
-        table[i].key = null;
-        table[i].values = null;
-        return removedVals;
+        int i = h1(hash, table.length);
+        int dist = 0;
+        int numChecked = 1;
+        while (table.keys[i] != null) {
+            int d = dist(i);
+            if (d < dist) {
+                Object k = table.keys[i];
+                int h = table.hashes[i];
+                Object v = table.values[i];
+                table.set(i, key, hash, vals);
+                key = k;
+                hash = h;
+                vals = v;
+                dist = d;
+            }
+            i = (i + 1) % table.length;
+            dist++;
+            numChecked++;
+        }
+        if (counting) {
+            opProbes += numChecked;
+        }
+        table.set(i, key, hash, vals);
+    }
+    
+    /*
+     * robinHoodShift - empties cell i of table by shifting back the
+     * entries after it, up to the first one that is empty or already 
+     * at the start of its probe sequence.
+     */
+    private void robinHoodShift(int i) {
+        int next = (i + 1) % table.length;
+        while (table.keys[next] != null && dist(next) > 0) {
+            table.set(i, table.keys[next], table.hashes[next], table.values[next]);
+            i = next;
+            next = (next + 1) % table.length;
+        }
+        table.set(i, null, 0, null);
+    }
+    
+    /*
+     * rebuildTable - replaces table with a table of the specified length
+     * that holds the same keys, all at once. This is the fallback for 
+     * when a key's probe sequence has no free cell; oldTable, if any, is 
+     * left as it is.
+     */
+    private void rebuildTable(int length) {
+        Slots cells = table;
+        table = new Slots(length, probeType == SWISS);
+        numRemoved = 0;
+        int probes = opProbes;     // moving the keys isn't part of the operation
+        for (int i = 0; i < cells.length; i++) {
+            if (cells.isLive(i)) {
+                place(cells.keys[i], cells.hashes[i], cells.values[i]);
+            }
+        }
+        opProbes = probes;
+    }
+    
+    /*
+     * insertAll - insert the pairs (keys[i], values[i]) in the hash table.
+     * All of the keys are hashed first, and the pairs are then inserted
+     * in order of their first probe position, so that neighboring probes 
+     * touch the same part of the table. Values for the same key keep the
+     * order in which they appear. Always returns true, because the table
+     * grows as needed.
+     */
+    public boolean insertAll(Object[] keys, Object[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values must have the same length");
+        }
+        int[] hashes = hashAll(keys);
+        long[] order = slotOrder(hashes);
+        for (int j = 0; j < order.length; j++) {
+            int i = (int) order[j];
+            insert(keys[i], hashes[i], values[i]);
+        }
+        return true;
+    }
+    
+    /*
+     * searchAll - search for each of the specified keys and return an
+     * array whose element i is the collection of values for keys[i], or 
+     * null if that key is not in the table. The lookups are grouped by
+     * first probe position, as in insertAll.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Queue<Object>[] searchAll(Object[] keys) {
+        int[] hashes = hashAll(keys);
+        long[] order = slotOrder(hashes);
+        Queue<Object>[] results = (Queue<Object>[]) new Queue[keys.length];
+        for (int j = 0; j < order.length; j++) {
+            int i = (int) order[j];
+            results[i] = search(keys[i], hashes[i]);
+        }
+        return results;
+    }
+    
+    /*
+     * removeAll - remove the entries for each of the specified keys and 
+     * return an array whose element i is the collection of values for 
+     * keys[i], or null if that key was not in the table. The removals 
+     * are grouped by first probe position, as in insertAll.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Queue<Object>[] removeAll(Object[] keys) {
+        int[] hashes = hashAll(keys);
+        long[] order = slotOrder(hashes);
+        Queue<Object>[] results = (Queue<Object>[]) new Queue[keys.length];
+        for (int j = 0; j < order.length; j++) {
+            int i = (int) order[j];
+            results[i] = remove(keys[i], hashes[i]);
+        }
+        return results;
+    }
+    
+    /*
+     * hashAll - returns the hashes of the specified keys, checking
+     * that none of them is null before the table is touched.
+     */
+    private int[] hashAll(Object[] keys) {
+        int[] hashes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                throw new IllegalArgumentException("key must be non-null");
+            }
+            hashes[i] = strategy.hash(keys[i]);
+        }
+        return hashes;
+    }
+    
+    /*
+     * slotOrder - returns the positions 0 .. hashes.length-1 sorted by
+     * the first probe position of each hash, and by position for 
+     * equal probe positions. Each element holds the probe position in its
+     * upper 32 bits and the position in its lower 32 bits.
+     */
+    private long[] slotOrder(int[] hashes) {
+        long[] order = new long[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            order[i] = ((long) h1(hashes[i], table.length) << 32) | i;
+        }
+        java.util.Arrays.sort(order);
+        return order;
+    }
+    
+    /*
+     * latencies - times each search for the specified keys on the 
+     * specified table and returns the times in nanoseconds, sorted.
+     */
+    private static long[] latencies(OpenHashTable table, Integer[] keys) {
+        long[] times = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long start = System.nanoTime();
+            table.search(keys[i]);
+            times[i] = System.nanoTime() - start;
+        }
+        java.util.Arrays.sort(times);
+        return times;
+    }
+    
+    /*
+     * returns the number of bytes in use on the heap, once five GCs in a
+     * row have freed nothing (some garbage outlives the first few)
+     */
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        int quiet = 0;
+        while (quiet < 5) {
+            System.gc();
+            long now = rt.totalMemory() - rt.freeMemory();
+            quiet = (now < used) ? 0 : quiet + 1;
+            used = Math.min(used, now);
+        }
+        return used;
+    }
+    
+    /* returns the mean of the specified values */
+    private static double mean(long[] values) {
+        double sum = 0;
+        for (long v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+    
+    /*
+     * Self-tests, then a probe type comparison: fills a table of each 
+     * probe type to a load of 0.9 with random Integer keys and reports the time of successful
+     * and unsuccessful searches: the mean and the 99.9th percentile. It
+     * first reports the memory used by the table itself, per cell and per
+     * key (not counting the key and value objects), next to the memory of
+     * the same keys in the old layout of Entry objects, and last reports the
+     * probes counted by stats() for the same searches. An optional 
+     * argument gives the number of keys.
+     */
+    public static void main(String[] args) {
+        String[] names = {"LINEAR", "QUADRATIC", "DOUBLE_HASHING", "ROBIN_HOOD", "SWISS"};
+        
+        System.out.println("(1.1) Testing on insert/search/remove across rebuilds");
+        try {
+            // a table of 4 cells is rebuilt many times over, and some
+            // of the operations below land while a rebuild is in progress
+            String results = "";
+            for (int type = 0; type < NUM_PROBE_TYPES; type++) {
+                OpenHashTable table = new OpenHashTable(4, type);
+                for (int i = 0; i < 200; i++) {
+                    table.insert(i, "v" + i);
+                }
+                for (int i = 0; i < 200; i += 2) {
+                    table.insert(i, "w" + i);
+                }
+                boolean ok = true;
+                for (int i = 0; i < 200; i += 3) {
+                    Queue<Object> vals = table.remove(i);
+                    String expected = (i % 2 == 0) ? "{v" + i + ", w" + i + "}" : "{v" + i + "}";
+                    ok = ok && vals != null && vals.toString().equals(expected);
+                }
+                for (int i = 0; i < 200; i++) {
+                    Queue<Object> vals = table.search(i);
+                    if (i % 3 == 0) {
+                        ok = ok && vals == null;
+                    } else {
+                        ok = ok && vals != null && vals.peek().equals("v" + i);
+                    }
+                }
+                results += names[type] + "=" + table.getNumKeys() + "," + ok + " ";
+            }
+            String expected = "LINEAR=133,true QUADRATIC=133,true DOUBLE_HASHING=133,true "
+                              + "ROBIN_HOOD=133,true SWISS=133,true ";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.2) Testing on inserting into removed cells");
+        try {
+            // 1, 11 and 21 all start probing at cell 1 of 10
+            OpenHashTable table = new OpenHashTable(10, LINEAR);
+            table.insert(1, "a");
+            table.insert(11, "b");
+            table.insert(21, "c");
+            table.remove(11);
+            String results = table.stats().getRemovedCells() + " ";
+            table.insert(31, "d");      // takes the removed cell 2
+            results += table.stats().getRemovedCells() + " " + table.table.keys[2] + " ";
+            table.remove(31);
+            table.insert(11, "e");      // and so does 11 when it comes back
+            results += table.stats().getRemovedCells() + " " + table.table.keys[2] + " "
+                       + table.search(11) + " " + table.search(21) + " " + table.search(31);
+            String expected = "1 0 31 0 11 {e} {c} null";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(2.1) Testing on ROBIN_HOOD remove");
+        try {
+            // 1, 17 and 33 start probing at cell 1 of 16, and 2 and 18 at
+            // cell 2, so the five keys fill cells 1-5 in this order
+            OpenHashTable table = new OpenHashTable(16, ROBIN_HOOD);
+            int[] keys = {1, 17, 33, 2, 18};
+            for (int key : keys) {
+                table.insert(key, "v" + key);
+            }
+            String results = "";
+            for (int i = 0; i < 7; i++) {
+                results += table.table.keys[i] + " ";
+            }
+            // removing 17 and then 1 shifts the rest of the cluster back
+            // each time, instead of leaving a removed cell
+            results += "| " + table.remove(17) + " ";
+            results += table.remove(1) + " | ";
+            for (int i = 0; i < 7; i++) {
+                results += table.table.keys[i] + " ";
+            }
+            results += "| " + table.stats().getRemovedCells();
+            for (int key : keys) {
+                results += " " + table.search(key);
+            }
+            String expected = "null 1 17 33 2 18 null | {v17} {v1} | "
+                              + "null 33 2 18 null null null | 0 null null {v33} {v2} {v18}";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(3.1) Testing on comparing cached hashes before keys");
+        try {
+            // keys whose hash codes are multiples of 16 that count their
+            // calls to equals
+            final int[] equalsCalls = new int[1];
+            class Key {
+                private int hash;
+                
+                Key(int hash) {
+                    this.hash = hash;
+                }
+                
+                public int hashCode() {
+                    return hash;
+                }
+                
+                public boolean equals(Object other) {
+                    equalsCalls[0]++;
+                    return other instanceof Key && ((Key) other).hash == hash;
+                }
+            }
+            
+            String results = "";
+            for (int type = 0; type < NUM_PROBE_TYPES; type++) {
+                OpenHashTable table = new OpenHashTable(64, type);
+                for (int i = 0; i < 8; i++) {
+                    table.insert(new Key(16 * i), i);
+                }
+                table.insert("Aa", "a");    // "Aa" and "BB" have the same hash code
+                table.insert("BB", "b");
+                equalsCalls[0] = 0;
+                Queue<Object> hit = table.search(new Key(16 * 7));
+                int hitCalls = equalsCalls[0];
+                Queue<Object> miss = table.search(new Key(16 * 8));
+                results += names[type] + "=" + hit + "," + hitCalls + "," + miss + "," 
+                           + (equalsCalls[0] - hitCalls) + "," + table.search("BB") + " ";
+            }
+            String expected = "LINEAR={7},1,null,0,{b} QUADRATIC={7},1,null,0,{b} "
+                              + "DOUBLE_HASHING={7},1,null,0,{b} ROBIN_HOOD={7},1,null,0,{b} "
+                              + "SWISS={7},1,null,0,{b} ";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(4.1) Testing on SWISS EMPTY and DELETED cells");
+        try {
+            // a table of 16 cells has two groups; find ten keys whose 
+            // probe sequences start at group 0 and one for group 1
+            int[] first = new int[10];
+            int second = -1;
+            int count = 0;
+            for (int k = 0; count < first.length || second == -1; k++) {
+                if (((swissHash(k) >>> 7) & 1) == 0) {
+                    if (count < first.length) {
+                        first[count++] = k;
+                    }
+                } else if (second == -1) {
+                    second = k;
+                }
+            }
+            
+            OpenHashTable table = new OpenHashTable(16, SWISS, 0.9);
+            for (int i = 0; i < 9; i++) {
+                table.insert(first[i], "v" + i);    // the 9th spills into group 1
+            }
+            table.insert(second, "w");
+            
+            // group 0 has no EMPTY cell left, so a removal there must 
+            // leave a DELETED cell for the probes that passed through it;
+            // group 1 does, so a removal there leaves the cell EMPTY
+            table.remove(first[3]);
+            String results = table.stats().getRemovedCells() + " " + table.search(first[8]);
+            table.remove(second);
+            results += " " + table.stats().getRemovedCells() + " " + table.search(second);
+            
+            // a new key for group 0 takes the DELETED cell
+            table.insert(first[9], "v9");
+            results += " " + table.stats().getRemovedCells() + " " 
+                       + table.table.keys[3].equals(first[9]) + " " + table.search(first[9]) 
+                       + " " + table.getNumKeys();
+            String expected = "1 {v8} 1 null 0 true {v9} 9";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(5.1) Testing on stats");
+        try {
+            // 1, 11 and 21 all start probing at cell 1 of 10, so their
+            // inserts make 1, 2 and 3 probes
+            OpenHashTable table = new OpenHashTable(10, LINEAR);
+            table.setCounting(true);
+            table.insert(1, "a");
+            table.insert(11, "b");
+            table.insert(21, "c");
+            table.insert(21, "d");      // a hit: 3 probes
+            table.search(21);           // 3 probes
+            table.search(31);           // cells 1-4, the last of them empty
+            table.remove(11);           // 2 probes, leaving a removed cell
+            table.search(41);           // cells 1-4 again
+            ProbeStats stats = table.stats();
+            String results = stats.getCount(ProbeStats.INSERT, false) + " "
+                             + stats.getMeanProbes(ProbeStats.INSERT, false) + " "
+                             + stats.getMaxProbes(ProbeStats.INSERT, false) + " "
+                             + stats.getCount(ProbeStats.INSERT, true) + " "
+                             + stats.getMeanProbes(ProbeStats.SEARCH, true) + " "
+                             + stats.getCount(ProbeStats.SEARCH, false) + " "
+                             + stats.getMeanProbes(ProbeStats.SEARCH, false) + " "
+                             + stats.getMeanProbes(ProbeStats.REMOVE, true) + " "
+                             + java.util.Arrays.toString(java.util.Arrays.copyOf(
+                                   stats.getHistogram(), 5))
+                             + " " + stats.getNumCells() + " " + stats.getNumKeys() + " "
+                             + stats.getRemovedCells() + " " + stats.getLongestCluster();
+            String expected = "3 2.0 3 1 3.0 2 4.0 2.0 [0, 1, 2, 3, 2] 10 2 1 3";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(6.1) Testing on search for a key with one value");
+        try {
+            // the value is kept in the cell, but search must still return
+            // a queue whose changes are changes to the table, even after
+            // the table has been rebuilt
+            String results = "";
+            for (int type = 0; type < NUM_PROBE_TYPES; type++) {
+                OpenHashTable table = new OpenHashTable(8, type);
+                table.insert("apple", 5);
+                Queue<Object> vals = table.search("apple");
+                vals.insert(10);
+                for (int i = 0; i < 100; i++) {
+                    table.insert(i, i);
+                }
+                vals.insert(15);
+                results += names[type] + "=" + table.search("apple") + " ";
+            }
+            String expected = "LINEAR={5, 10, 15} QUADRATIC={5, 10, 15} "
+                              + "DOUBLE_HASHING={5, 10, 15} ROBIN_HOOD={5, 10, 15} "
+                              + "SWISS={5, 10, 15} ";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(6.2) Testing on searches that only read");
+        try {
+            // reading the values of a key with one value leaves it in the
+            // cell; only a second value makes a queue
+            String results = "";
+            for (int type = 0; type < NUM_PROBE_TYPES; type++) {
+                OpenHashTable table = new OpenHashTable(8, type);
+                for (int i = 0; i < 100; i++) {
+                    table.insert(i, "v" + i);
+                }
+                boolean ok = true;
+                for (int i = 0; i < 100; i++) {
+                    Queue<Object> vals = table.search(i);
+                    ok = ok && vals.size() == 1 && vals.peek().equals("v" + i);
+                }
+                table.search(5).insert("w5");
+                table.insert(6, "w6");
+                Queue<Object> vals = table.search(7);
+                Queue<Object> removedVals = table.remove(7);
+                int numQueues = 0;
+                for (Slots tab : new Slots[] {table.table, table.oldTable}) {
+                    for (int i = 0; tab != null && i < tab.length; i++) {
+                        if (tab.values[i] instanceof Values) {
+                            numQueues++;
+                        }
+                    }
+                }
+                results += names[type] + "=" + ok + "," + numQueues + "," 
+                           + removedVals + "," + vals + " ";
+            }
+            String expected = "LINEAR=true,2,{v7},{} QUADRATIC=true,2,{v7},{} "
+                              + "DOUBLE_HASHING=true,2,{v7},{} ROBIN_HOOD=true,2,{v7},{} "
+                              + "SWISS=true,2,{v7},{} ";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 900000;
+        int size = (int) (n / 0.9);
+        
+        java.util.Random rand = new java.util.Random(112);
+        Integer[] present = new Integer[n];
+        Integer[] absent = new Integer[n];
+        java.util.HashSet<Integer> used = new java.util.HashSet<Integer>();
+        for (int i = 0; i < n; i++) {
+            do {
+                present[i] = rand.nextInt();
+            } while (!used.add(present[i]));
+        }
+        for (int i = 0; i < n; i++) {
+            do {
+                absent[i] = rand.nextInt();
+            } while (used.contains(absent[i]));
+        }
+        
+        used = null;
+        
+        long before = usedMemory();
+        OpenHashTable empty = new OpenHashTable(size, LINEAR, 0.95);
+        long cellBytes = usedMemory() - before;
+        for (int i = 0; i < n; i++) {
+            empty.insert(present[i], "value");
+        }
+        long keyBytes = usedMemory() - before - cellBytes;
+        int numKeys = empty.getNumKeys();
+        empty = null;
+        
+        // the same keys, placed by linear probing, in an array of Entry 
+        // objects, which is how the cells were kept before Slots
+        before = usedMemory();
+        Entry[] entries = new Entry[size];
+        long entryCellBytes = usedMemory() - before;
+        for (int i = 0; i < n; i++) {
+            int j = Math.floorMod(present[i].hashCode(), size);
+            while (entries[j] != null) {
+                j = (j + 1) % size;
+            }
+            entries[j] = new Entry(present[i], "value");
+        }
+        long entryKeyBytes = usedMemory() - before - entryCellBytes;
+        System.out.println("memory of the table itself, without the keys and values"
+                           + " (" + numKeys + " keys, " + entries.length + " cells):");
+        System.out.printf("parallel arrays: %5.1f bytes/cell + %5.1f bytes/key "
+                          + "= %5.1f bytes per key%n",
+                          (double) cellBytes / size, (double) keyBytes / n,
+                          (double) (cellBytes + keyBytes) / n);
+        System.out.printf("Entry objects:   %5.1f bytes/cell + %5.1f bytes/key "
+                          + "= %5.1f bytes per key%n%n",
+                          (double) entryCellBytes / size, (double) entryKeyBytes / n,
+                          (double) (entryCellBytes + entryKeyBytes) / n);
+        entries = null;
+        
+        System.out.println("probe type       load   hit mean  hit p99.9"
+                           + "   miss mean  miss p99.9  (ns)");
+        for (int round = 0; round < 2; round++) {     // the first round warms up
+            for (int type = 0; type < NUM_PROBE_TYPES; type++) {
+                OpenHashTable table = new OpenHashTable(size, type, 0.95);
+                for (int i = 0; i < n; i++) {
+                    table.insert(present[i], i);
+                }
+                table.finishResize();
+                long[] hits = latencies(table, present);
+                long[] misses = latencies(table, absent);
+                int p999 = (int) (n * 0.999);
+                if (round == 1) {
+                    System.out.printf("%-15s %5.3f %10.1f %10d %11.1f %11d%n", 
+                                      names[type], table.load(), mean(hits), hits[p999],
+                                      mean(misses), misses[p999]);
+                }
+            }
+        }
+        
+        // the same work, counted in probes instead of nanoseconds, after
+        // a tenth of the keys have been removed
+        System.out.println();
+        System.out.println("probe type      insert  hit mean  hit max"
+                           + "   miss mean  miss max  tombstones  cluster");
+        for (int type = 0; type < NUM_PROBE_TYPES; type++) {
+            OpenHashTable table = new OpenHashTable(size, type, 0.95);
+            table.setCounting(true);
+            for (int i = 0; i < n; i++) {
+                table.insert(present[i], i);
+            }
+            table.finishResize();
+            for (int i = 0; i < n; i += 10) {
+                table.remove(present[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                table.search(present[i]);
+                table.search(absent[i]);
+            }
+            ProbeStats stats = table.stats();
+            System.out.printf("%-15s %6.2f %9.2f %8d %11.2f %9d %11.3f %8d%n", names[type],
+                              stats.getMeanProbes(ProbeStats.INSERT, false),
+                              stats.getMeanProbes(ProbeStats.SEARCH, true),
+                              stats.getMaxProbes(ProbeStats.SEARCH, true),
+                              stats.getMeanProbes(ProbeStats.SEARCH, false),
+                              stats.getMaxProbes(ProbeStats.SEARCH, false),
+                              stats.getTombstoneRatio(), stats.getLongestCluster());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,867 @@
+/*
+ * PersistentHashTable.java
+ *
+ * Computer Science 112, Boston University
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/*
+ * A class that implements a hash table that lives in two memory-mapped
+ * files in a directory, so that a program can reopen the table when it
+ * restarts instead of building it again. The operating system reads the
+ * pages of the files in as lookups touch them.
+ *
+ * Keys and values are converted to bytes by Codecs, as in
+ * OffHeapHashTable. The file "data" is a log: every insert and remove
+ * appends a record to it, and no record is ever changed.
+ *
+ *   record: type (int), hash (int), previous record of the key (long),
+ *           key length (int), value length (int), key bytes, value bytes
+ *
+ * The address of a record is its offset in the file. The file is mapped
+ * in segments of a fixed size, and a record never crosses from one
+ * segment into the next; a PAD record fills the end of a segment when
+ * the next record doesn't fit. The values of a key are found by following
+ * the "previous" links back from its latest insert record, up to the
+ * insert that had no previous record.
+ *
+ * The file "index" holds fixed-width slots, one per position of an open
+ * addressing table with linear probing: the address of the latest record
+ * of a key (or EMPTY or REMOVED) and the key's hash. When it gets too
+ * full, a bigger index is built in another file, which is then renamed
+ * over the old one.
+ *
+ * commit() makes the records written so far durable: it forces them to
+ * the disk and only then records the end of the log in the header of
+ * the data file. The index is forced only by close(), which marks it
+ * clean. When the table is reopened, a clean index that matches the log
+ * is used as it is; otherwise (after a crash) a new index is built by
+ * replaying the log up to its committed end, so the table holds exactly
+ * the committed inserts and removes. The log is never compacted, so the
+ * space taken by removed keys is not reclaimed.
+ *
+ * search and remove return a queue of newly decoded copies of the
+ * values; changing it does not change the table.
+ */
+public class PersistentHashTable<K, V> implements HashTable {
+    // the header of the data file
+    private static final long DATA_MAGIC = 0x5054424c44415441L;
+    private static final int DATA_COMMITTED = 8;       // long: the committed end
+    private static final int DATA_SEGMENT_SIZE = 16;   // int
+    private static final int DATA_START = 64;          // the first record
+
+    // the header of the index file
+    private static final long INDEX_MAGIC = 0x5054424c494e4458L;
+    private static final int INDEX_CAPACITY = 8;       // int
+    private static final int INDEX_CLEAN = 12;         // int: 1 if clean
+    private static final int INDEX_LOG_END = 16;       // long: the log end it matches
+    private static final int INDEX_NUM_KEYS = 24;      // int
+    private static final int INDEX_NUM_REMOVED = 28;   // int
+    private static final int INDEX_HEADER_SIZE = 64;
+
+    // the fields of an index slot, and the slots mapped at a time
+    private static final int SLOT_SIZE = 16;
+    private static final int SLOT_HASH = 8;
+    private static final int SEGMENT_SLOTS = 1 << 20;
+
+    // markers for the address in an index slot
+    private static final long EMPTY = 0L;
+    private static final long REMOVED = -1L;
+    private static final long NONE = 0L;        // no previous record
+
+    // the types of record
+    private static final int INSERT = 1;
+    private static final int REMOVE = 2;
+    private static final int PAD = 3;
+
+    // the offsets of the fields of a record
+    private static final int REC_TYPE = 0;
+    private static final int REC_HASH = 4;
+    private static final int REC_PREV = 8;
+    private static final int REC_KEY_LENGTH = 16;
+    private static final int REC_VALUE_LENGTH = 20;
+    private static final int REC_BYTES = 24;
+
+    // the default size of a segment of the data file, in bytes
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    // the maximum fraction of index slots that can be used or removed
+    private static final double MAX_LOAD = 0.75;
+
+    private Codec<K> keyCodec;
+    private Codec<V> valueCodec;
+    private Path dir;
+
+    private FileChannel dataChannel;
+    private ArrayList<MappedByteBuffer> segments;
+    private int segmentSize;
+    private long end;              // where the next record goes
+    private long committedEnd;     // the end of the log as of the last commit
+    private long forcedEnd;        // the records before this are on the disk
+
+    private FileChannel indexChannel;
+    private MappedByteBuffer indexHeader;
+    private ArrayList<MappedByteBuffer> indexSegments;
+    private int capacity;          // the number of index slots
+    private boolean clean;         // whether the index file is marked clean
+    private int numKeys;
+    private int numRemoved;        // the number of REMOVED slots
+
+    private ByteBuffer keyScratch;     // heap buffers for encoding
+    private ByteBuffer valueScratch;
+
+    /*
+     * Constructor that opens the table in the specified directory, or
+     * creates an empty one there if the directory has no table.
+     */
+    public PersistentHashTable(Path dir, Codec<K> keyCodec, Codec<V> valueCodec)
+        throws IOException
+    {
+        this(dir, 16, keyCodec, valueCodec, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /*
+     * Constructor that also takes the number of keys that a new table
+     * has room for before its index has to grow, and the size in bytes
+     * of the segments of a new data file. An existing table keeps the
+     * segment size that it was created with.
+     */
+    public PersistentHashTable(Path dir, int size, Codec<K> keyCodec,
+                               Codec<V> valueCodec, int segmentSize)
+        throws IOException
+    {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        if (keyCodec == null || valueCodec == null) {
+            throw new IllegalArgumentException("codecs must be non-null");
+        }
+        if (segmentSize < 4096 || segmentSize % 8 != 0) {
+            throw new IllegalArgumentException("invalid segmentSize: " + segmentSize);
+        }
+
+        this.dir = dir;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        keyScratch = ByteBuffer.allocate(64);
+        valueScratch = ByteBuffer.allocate(64);
+        Files.createDirectories(dir);
+
+        openData(segmentSize);
+        if (!openIndex()) {
+            int cap = 2;
+            while (cap * MAX_LOAD < size) {
+                cap *= 2;
+            }
+            createIndex(cap);
+            replay();
+        }
+    }
+
+    /*
+     * openData - opens (or creates) the data file and maps enough
+     * segments of it to hold the committed records.
+     */
+    private void openData(int newSegmentSize) throws IOException {
+        dataChannel = FileChannel.open(dir.resolve("data"), StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments = new ArrayList<MappedByteBuffer>();
+        if (dataChannel.size() == 0) {
+            segmentSize = newSegmentSize;
+            MappedByteBuffer first = mapSegment(0);
+            first.putLong(0, DATA_MAGIC);
+            first.putLong(DATA_COMMITTED, DATA_START);
+            first.putInt(DATA_SEGMENT_SIZE, segmentSize);
+            first.force();
+            committedEnd = DATA_START;
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(DATA_START);
+            dataChannel.read(header, 0);
+            if (header.getLong(0) != DATA_MAGIC) {
+                throw new IOException(dir.resolve("data") + " is not a table's data file");
+            }
+            committedEnd = header.getLong(DATA_COMMITTED);
+            segmentSize = header.getInt(DATA_SEGMENT_SIZE);
+            mapSegment(0);
+        }
+        while ((long) segments.size() * segmentSize < committedEnd) {
+            mapSegment(segments.size());
+        }
+        end = committedEnd;
+        forcedEnd = committedEnd;
+    }
+
+    /* maps segment number n of the data file, extending the file as needed */
+    private MappedByteBuffer mapSegment(int n) throws IOException {
+        MappedByteBuffer seg = dataChannel.map(FileChannel.MapMode.READ_WRITE,
+                                               (long) n * segmentSize, segmentSize);
+        segments.add(seg);
+        return seg;
+    }
+
+    /*
+     * openIndex - opens the index file and returns true if it is clean
+     * and matches the committed log, so that it can be used as it is.
+     * Otherwise, returns false without keeping it open.
+     */
+    private boolean openIndex() throws IOException {
+        Path path = dir.resolve("index");
+        if (!Files.exists(path) || Files.size(path) < INDEX_HEADER_SIZE) {
+            return false;
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                              INDEX_HEADER_SIZE);
+        int cap = header.getInt(INDEX_CAPACITY);
+        if (header.getLong(0) != INDEX_MAGIC || header.getInt(INDEX_CLEAN) != 1
+            || header.getLong(INDEX_LOG_END) != committedEnd
+            || channel.size() < INDEX_HEADER_SIZE + (long) cap * SLOT_SIZE) {
+            channel.close();
+            return false;
+        }
+
+        indexChannel = channel;
+        indexHeader = header;
+        capacity = cap;
+        indexSegments = mapIndex(channel, cap);
+        numKeys = header.getInt(INDEX_NUM_KEYS);
+        numRemoved = header.getInt(INDEX_NUM_REMOVED);
+        clean = true;
+        return true;
+    }
+
+    /* maps the slots of an index file of the specified capacity */
+    private static ArrayList<MappedByteBuffer> mapIndex(FileChannel channel, int cap)
+        throws IOException
+    {
+        ArrayList<MappedByteBuffer> segs = new ArrayList<MappedByteBuffer>();
+        for (long first = 0; first < cap; first += SEGMENT_SLOTS) {
+            long slots = Math.min(SEGMENT_SLOTS, cap - first);
+            segs.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                                 INDEX_HEADER_SIZE + first * SLOT_SIZE,
+                                 slots * SLOT_SIZE));
+        }
+        return segs;
+    }
+
+    /*
+     * createIndex - replaces the index with an empty, dirty one of the
+     * specified capacity.
+     */
+    private void createIndex(int cap) throws IOException {
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        Path path = dir.resolve("index");
+        Files.deleteIfExists(path);
+        indexChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexHeader = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE);
+        indexHeader.putLong(0, INDEX_MAGIC);
+        indexHeader.putInt(INDEX_CAPACITY, cap);
+        indexHeader.putInt(INDEX_CLEAN, 0);
+        indexSegments = mapIndex(indexChannel, cap);
+        capacity = cap;
+        clean = false;
+        numKeys = 0;
+        numRemoved = 0;
+    }
+
+    /*
+     * replay - applies the records of the log, up to its committed end,
+     * to the (empty) index.
+     */
+    private void replay() {
+        long address = DATA_START;
+        while (address < committedEnd) {
+            ByteBuffer seg = segment(address);
+            int off = offset(address);
+            int type = seg.getInt(off + REC_TYPE);
+            if (type == PAD) {
+                address = nextSegment(address);
+                continue;
+            }
+
+            int hash = seg.getInt(off + REC_HASH);
+            int keyLength = seg.getInt(off + REC_KEY_LENGTH);
+            int valueLength = seg.getInt(off + REC_VALUE_LENGTH);
+            int slot = findSlot(keyView(address), hash);
+            if (type == INSERT) {
+                if (slot < 0) {
+                    addSlot(-1 - slot, address, hash);
+                } else {
+                    setSlot(slot, address, hash);
+                }
+            } else if (slot >= 0) {
+                removeSlot(slot);
+            }
+            address += recordSize(keyLength, valueLength);
+        }
+    }
+
+    /*
+     * Helper methods for working with addresses, segments and slots.
+     */
+    private ByteBuffer segment(long address) {
+        return segments.get((int) (address / segmentSize));
+    }
+
+    private int offset(long address) {
+        return (int) (address % segmentSize);
+    }
+
+    private long nextSegment(long address) {
+        return (address / segmentSize + 1) * segmentSize;
+    }
+
+    private static int recordSize(int keyLength, int valueLength) {
+        return (REC_BYTES + keyLength + valueLength + 7) & ~7;
+    }
+
+    private ByteBuffer indexSegment(int slot) {
+        return indexSegments.get(slot / SEGMENT_SLOTS);
+    }
+
+    private long slotAddress(int slot) {
+        return indexSegment(slot).getLong((slot % SEGMENT_SLOTS) * SLOT_SIZE);
+    }
+
+    private int slotHash(int slot) {
+        return indexSegment(slot).getInt((slot % SEGMENT_SLOTS) * SLOT_SIZE + SLOT_HASH);
+    }
+
+    private void setSlot(int slot, long address, int hash) {
+        ByteBuffer seg = indexSegment(slot);
+        seg.putLong((slot % SEGMENT_SLOTS) * SLOT_SIZE, address);
+        seg.putInt((slot % SEGMENT_SLOTS) * SLOT_SIZE + SLOT_HASH, hash);
+    }
+
+    /* returns the key bytes of the record at the specified address */
+    private ByteBuffer keyView(long address) {
+        ByteBuffer view = segment(address).duplicate();
+        int off = offset(address);
+        view.limit(off + REC_BYTES + view.getInt(off + REC_KEY_LENGTH));
+        view.position(off + REC_BYTES);
+        return view.slice();
+    }
+
+    /*
+     * keyEquals - returns true if the record at the specified address
+     * has exactly the key bytes in the specified buffer.
+     */
+    private boolean keyEquals(long address, ByteBuffer key) {
+        ByteBuffer seg = segment(address);
+        int off = offset(address) + REC_BYTES;
+        int length = key.remaining();
+        if (seg.getInt(offset(address) + REC_KEY_LENGTH) != length) {
+            return false;
+        }
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            if (seg.getLong(off + i) != key.getLong(key.position() + i)) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (seg.get(off + i) != key.get(key.position() + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * findSlot - returns the index slot that holds the specified key, or,
+     * if the key isn't in the table, -1 - (the slot where it should go).
+     */
+    private int findSlot(ByteBuffer key, int hash) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        int firstRemoved = -1;
+        while (true) {
+            long address = slotAddress(slot);
+            if (address == EMPTY) {
+                return -1 - ((firstRemoved != -1) ? firstRemoved : slot);
+            } else if (address == REMOVED) {
+                if (firstRemoved == -1) {
+                    firstRemoved = slot;
+                }
+            } else if (slotHash(slot) == hash && keyEquals(address, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /* puts a new key in the specified free slot */
+    private void addSlot(int slot, long address, int hash) {
+        if (slotAddress(slot) == REMOVED) {
+            numRemoved--;
+        }
+        setSlot(slot, address, hash);
+        numKeys++;
+        if (numKeys + numRemoved > MAX_LOAD * capacity) {
+            int cap = capacity;
+            while (numKeys > MAX_LOAD * cap / 2) {
+                cap *= 2;
+            }
+            growIndex(cap);
+        }
+    }
+
+    /* marks the specified slot as removed */
+    private void removeSlot(int slot) {
+        setSlot(slot, REMOVED, 0);
+        numKeys--;
+        numRemoved++;
+    }
+
+    /*
+     * growIndex - builds an index with the specified capacity, and no
+     * REMOVED slots, in a new file, and renames it over the old one.
+     */
+    private void growIndex(int cap) {
+        try {
+            Path tmp = dir.resolve("index.tmp");
+            Files.deleteIfExists(tmp);
+            FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW,
+                                                   StandardOpenOption.READ,
+                                                   StandardOpenOption.WRITE);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                                  INDEX_HEADER_SIZE);
+            header.putLong(0, INDEX_MAGIC);
+            header.putInt(INDEX_CAPACITY, cap);
+            header.putInt(INDEX_CLEAN, 0);
+            ArrayList<MappedByteBuffer> segs = mapIndex(channel, cap);
+
+            for (int i = 0; i < capacity; i++) {
+                long address = slotAddress(i);
+                if (address == EMPTY || address == REMOVED) {
+                    continue;
+                }
+                int hash = slotHash(i);
+                int slot = hash & (cap - 1);
+                while (segs.get(slot / SEGMENT_SLOTS)
+                       .getLong((slot % SEGMENT_SLOTS) * SLOT_SIZE) != EMPTY) {
+                    slot = (slot + 1) & (cap - 1);
+                }
+                ByteBuffer seg = segs.get(slot / SEGMENT_SLOTS);
+                seg.putLong((slot % SEGMENT_SLOTS) * SLOT_SIZE, address);
+                seg.putInt((slot % SEGMENT_SLOTS) * SLOT_SIZE + SLOT_HASH, hash);
+            }
+
+            Files.move(tmp, dir.resolve("index"), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+            indexChannel.close();
+            indexChannel = channel;
+            indexHeader = header;
+            indexSegments = segs;
+            capacity = cap;
+            numRemoved = 0;
+            clean = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * markDirty - marks the index file as not matching the log, on the
+     * disk, before the first change to the table since it was opened.
+     */
+    private void markDirty() {
+        if (clean) {
+            indexHeader.putInt(INDEX_CLEAN, 0);
+            indexHeader.force();
+            clean = false;
+        }
+    }
+
+    /*
+     * append - appends a record to the log, mapping another segment if it
+     * doesn't fit in the current one, and returns its address.
+     */
+    private long append(int type, int hash, long prev, ByteBuffer key, ByteBuffer value) {
+        int keyLength = key.remaining();
+        int valueLength = (value == null) ? 0 : value.remaining();
+        int size = recordSize(keyLength, valueLength);
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("record of " + size
+                                               + " bytes doesn't fit in a segment");
+        }
+        if (offset(end) + size > segmentSize) {
+            segment(end).putInt(offset(end) + REC_TYPE, PAD);
+            end = nextSegment(end);
+        }
+        if (end / segmentSize >= segments.size()) {
+            try {
+                mapSegment(segments.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        long address = end;
+        ByteBuffer seg = segment(address);
+        int off = offset(address);
+        seg.putInt(off + REC_TYPE, type);
+        seg.putInt(off + REC_HASH, hash);
+        seg.putLong(off + REC_PREV, prev);
+        seg.putInt(off + REC_KEY_LENGTH, keyLength);
+        seg.putInt(off + REC_VALUE_LENGTH, valueLength);
+        seg.put(off + REC_BYTES, key, key.position(), keyLength);
+        if (value != null) {
+            seg.put(off + REC_BYTES + keyLength, value, value.position(), valueLength);
+        }
+        end += size;
+        return address;
+    }
+
+    /* throws an exception if the table has been closed */
+    private void checkOpen() {
+        if (dataChannel == null) {
+            throw new IllegalStateException("the table is closed");
+        }
+    }
+
+    /*
+     * insert - insert the specified (key, value) pair in the hash table.
+     * Always returns true, because the table grows as needed. The pair
+     * survives a crash only once commit() has been called.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean insert(Object key, Object value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+        checkOpen();
+
+        ByteBuffer k = OffHeapHashTable.encode(keyCodec, (K) key, keyScratch);
+        keyScratch = k;
+        ByteBuffer v = OffHeapHashTable.encode(valueCodec, (V) value, valueScratch);
+        valueScratch = v;
+        int hash = OffHeapHashTable.hashBytes(k);
+
+        markDirty();
+        int slot = findSlot(k, hash);
+        if (slot >= 0) {
+            long address = append(INSERT, hash, slotAddress(slot), k, v);
+            setSlot(slot, address, hash);
+        } else {
+            long address = append(INSERT, hash, NONE, k, v);
+            addSlot(-1 - slot, address, hash);
+        }
+        return true;
+    }
+
+    /*
+     * search - search for the specified key and return a copy of the
+     * associated collection of values, or null if the key is not in
+     * the table
+     */
+    @SuppressWarnings("unchecked")
+    public Queue<Object> search(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+        checkOpen();
+
+        ByteBuffer k = OffHeapHashTable.encode(keyCodec, (K) key, keyScratch);
+        keyScratch = k;
+        int slot = findSlot(k, OffHeapHashTable.hashBytes(k));
+        if (slot < 0) {
+            return null;
+        }
+        return decodeValues(slotAddress(slot));
+    }
+
+    /*
+     * remove - remove from the table the entry for the specified key
+     * and return a copy of the associated collection of values, or null
+     * if the key is not in the table
+     */
+    @SuppressWarnings("unchecked")
+    public Queue<Object> remove(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+        checkOpen();
+
+        ByteBuffer k = OffHeapHashTable.encode(keyCodec, (K) key, keyScratch);
+        keyScratch = k;
+        int hash = OffHeapHashTable.hashBytes(k);
+        int slot = findSlot(k, hash);
+        if (slot < 0) {
+            return null;
+        }
+
+        Queue<Object> removedVals = decodeValues(slotAddress(slot));
+        markDirty();
+        append(REMOVE, hash, NONE, k, null);
+        removeSlot(slot);
+        return removedVals;
+    }
+
+    /*
+     * decodeValues - returns a queue of the decoded values of the key
+     * whose latest insert record is at the specified address, in the
+     * order in which they were inserted.
+     */
+    private Queue<Object> decodeValues(long address) {
+        ArrayList<Long> records = new ArrayList<Long>();
+        while (address != NONE) {
+            records.add(address);
+            address = segment(address).getLong(offset(address) + REC_PREV);
+        }
+
+        ArrayQueue<Object> values = new ArrayQueue<Object>();
+        for (int i = records.size() - 1; i >= 0; i--) {
+            long rec = records.get(i);
+            ByteBuffer view = segment(rec).duplicate();
+            int off = offset(rec);
+            int start = off + REC_BYTES + view.getInt(off + REC_KEY_LENGTH);
+            view.limit(start + view.getInt(off + REC_VALUE_LENGTH));
+            view.position(start);
+            values.insert(valueCodec.decode(view));
+        }
+        return values;
+    }
+
+    /*
+     * commit - makes every insert and remove so far durable: forces their
+     * records to the disk, and then records the new end of the log.
+     */
+    public void commit() {
+        checkOpen();
+        if (end == committedEnd) {
+            return;
+        }
+        // force each segment that has records not yet on the disk
+        for (int n = (int) (forcedEnd / segmentSize); n < segments.size(); n++) {
+            long start = Math.max(forcedEnd, (long) n * segmentSize);
+            long stop = Math.min(end, (long) (n + 1) * segmentSize);
+            if (start < stop) {
+                segments.get(n).force(offset(start), (int) (stop - start));
+            }
+        }
+        forcedEnd = end;
+
+        MappedByteBuffer first = segments.get(0);
+        first.putLong(DATA_COMMITTED, end);
+        first.force(0, DATA_START);
+        committedEnd = end;
+    }
+
+    /*
+     * close - commits, writes the index to the disk and marks it clean,
+     * so that reopening the table doesn't have to replay the log, and
+     * closes the files.
+     */
+    public void close() throws IOException {
+        if (dataChannel == null) {
+            return;
+        }
+        commit();
+        for (MappedByteBuffer seg : indexSegments) {
+            seg.force();
+        }
+        indexHeader.putInt(INDEX_NUM_KEYS, numKeys);
+        indexHeader.putInt(INDEX_NUM_REMOVED, numRemoved);
+        indexHeader.putLong(INDEX_LOG_END, committedEnd);
+        indexHeader.putInt(INDEX_CLEAN, 1);
+        indexHeader.force();
+        indexChannel.close();
+        dataChannel.close();
+        dataChannel = null;
+    }
+
+    /*
+     * getNumKeys - returns the number of keys in the table.
+     */
+    public int getNumKeys() {
+        return numKeys;
+    }
+
+    /*
+     * load - returns the number of keys in the table divided by the
+     * number of index slots.
+     */
+    public double load() {
+        return (double) numKeys / capacity;
+    }
+
+    /* deletes the files of a table in the specified directory, and the directory */
+    private static void deleteTable(Path dir) throws IOException {
+        Files.deleteIfExists(dir.resolve("data"));
+        Files.deleteIfExists(dir.resolve("index"));
+        Files.deleteIfExists(dir.resolve("index.tmp"));
+        Files.deleteIfExists(dir);
+    }
+
+    /*
+     * Self-tests, then a restart test: builds a table of (String, Long) pairs in a temporary
+     * directory and compares the time to build it (and an OpenHashTable
+     * of the same pairs) with the time to reopen it and do its first
+     * lookups. It then checks recovery: it commits some inserts, makes
+     * more without committing, and opens the directory again without
+     * closing the table, as if the program had crashed. An optional
+     * argument gives the number of keys.
+     */
+    public static void main(String[] args) throws IOException {
+        System.out.println("(1.1) Testing on close and reopen");
+        try {
+            // small segments, so that the records span several of them
+            Path testDir = Files.createTempDirectory("pht");
+            PersistentHashTable<String, Long> table =
+                new PersistentHashTable<String, Long>(testDir, 16, Codec.STRING, 
+                                                      Codec.LONG, 4096);
+            ChainedHashTable expectedTable = new ChainedHashTable(64);
+            for (long i = 0; i < 200; i++) {
+                table.insert("key" + i, i);
+                expectedTable.insert("key" + i, i);
+            }
+            for (long i = 0; i < 50; i++) {
+                table.insert("key" + i, i + 1000);
+                expectedTable.insert("key" + i, i + 1000);
+            }
+            for (long i = 100; i < 150; i++) {
+                table.remove("key" + i);
+                expectedTable.remove("key" + i);
+            }
+            table.close();
+            
+            table = new PersistentHashTable<String, Long>(testDir, Codec.STRING, Codec.LONG);
+            boolean same = true;
+            for (long i = 0; i < 200; i++) {
+                same = same && String.valueOf(table.search("key" + i))
+                                     .equals(String.valueOf(expectedTable.search("key" + i)));
+            }
+            String results = table.getNumKeys() + " " + same + " " + table.search("key7");
+            table.close();
+            deleteTable(testDir);
+            String expected = "150 true {7, 1007}";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        System.out.println("(1.2) Testing on recovery from a torn last record");
+        try {
+            Path testDir = Files.createTempDirectory("pht");
+            PersistentHashTable<String, Long> table =
+                new PersistentHashTable<String, Long>(testDir, 16, Codec.STRING, 
+                                                      Codec.LONG, 4096);
+            for (long i = 0; i < 100; i++) {
+                table.insert("key" + i, i);
+            }
+            table.remove("key5");
+            table.commit();
+            
+            // the program dies while writing one more record: cut the 
+            // data file off in the middle of it, without closing the table
+            long tornStart = table.end;
+            table.insert("torn", 112L);
+            long tornEnd = table.end;
+            table = null;
+            try (FileChannel data = FileChannel.open(testDir.resolve("data"),
+                                                     StandardOpenOption.WRITE)) {
+                data.truncate((tornStart + tornEnd) / 2);
+            }
+            
+            table = new PersistentHashTable<String, Long>(testDir, Codec.STRING, Codec.LONG);
+            String results = table.getNumKeys() + " " + table.search("key99") + " "
+                             + table.search("key5") + " " + table.search("torn");
+            
+            // the recovered table takes new records where the torn one was
+            table.insert("after", 1L);
+            table.close();
+            table = new PersistentHashTable<String, Long>(testDir, Codec.STRING, Codec.LONG);
+            results += " | " + table.getNumKeys() + " " + table.search("after") + " " 
+                       + table.search("torn") + " " + table.search("key0");
+            table.close();
+            deleteTable(testDir);
+            String expected = "99 {99} null null | 100 {1} null {0}";
+            System.out.println("actual results:");
+            System.out.println(results);
+            System.out.println("expected results:");
+            System.out.println(expected);
+            System.out.print("MATCHES EXPECTED RESULTS?: ");
+            System.out.println(results.equals(expected));
+        } catch (Exception e) {
+            System.out.println("INCORRECTLY THREW AN EXCEPTION: " + e);
+        }
+        System.out.println();
+        
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        Path dir = Files.createTempDirectory("pht");
+
+        long start = System.nanoTime();
+        OpenHashTable open = new OpenHashTable(16, OpenHashTable.LINEAR,
+                                               OpenHashTable.DEFAULT_MAX_LOAD,
+                                               HashStrategy.MURMUR3);
+        for (long i = 0; i < n; i++) {
+            open.insert("key" + i, i);
+        }
+        System.out.printf("build OpenHashTable:       %6d ms%n",
+                          (System.nanoTime() - start) / 1000000);
+        open = null;
+
+        start = System.nanoTime();
+        PersistentHashTable<String, Long> table =
+            new PersistentHashTable<String, Long>(dir, Codec.STRING, Codec.LONG);
+        for (long i = 0; i < n; i++) {
+            table.insert("key" + i, i);
+        }
+        table.close();
+        System.out.printf("build PersistentHashTable: %6d ms (%d MB of files)%n",
+                          (System.nanoTime() - start) / 1000000,
+                          (Files.size(dir.resolve("data")) + Files.size(dir.resolve("index")))
+                          / (1024 * 1024));
+
+        start = System.nanoTime();
+        table = new PersistentHashTable<String, Long>(dir, Codec.STRING, Codec.LONG);
+        boolean ok = table.getNumKeys() == n;
+        for (long i = 0; i < 1000; i++) {
+            long k = i * 7919 % n;
+            ok = ok && table.search("key" + k).peek().equals(k);
+        }
+        System.out.printf("reopen + 1000 lookups:     %6d ms (%s)%n",
+                          (System.nanoTime() - start) / 1000000, ok ? "ok" : "FAILED");
+
+        // recovery: the first batch is committed, the second is not
+        for (long i = 0; i < 1000; i++) {
+            table.insert("new" + i, i);
+            table.remove("key" + i);
+        }
+        table.commit();
+        for (long i = 1000; i < 2000; i++) {
+            table.insert("new" + i, i);
+        }
+        start = System.nanoTime();
+        PersistentHashTable<String, Long> recovered =
+            new PersistentHashTable<String, Long>(dir, Codec.STRING, Codec.LONG);
+        ok = recovered.getNumKeys() == n && recovered.search("new999") != null
+             && recovered.search("new1000") == null && recovered.search("key999") == null;
+        System.out.printf("recover after a crash:     %6d ms (%s)%n",
+                          (System.nanoTime() - start) / 1000000, ok ? "ok" : "FAILED");
+        recovered.close();
+        table = null;
+        deleteTable(dir);
+    }
+}
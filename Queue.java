@@ -4,11 +4,13 @@
  * Computer Science 112, Boston University
  */
 
+import java.util.Iterator;
+
 /*
  * A generic interface that defines a simple ADT for a queue of
  * objects of a particular type T.
  */
-public interface Queue<T> {
+public interface Queue<T> extends Iterable<T> {
     /* 
      * adds the specified item to the rear of the queue.  Returns false
      * if the list is full, and true otherwise.
@@ -33,4 +35,30 @@ public interface Queue<T> {
 
     /* returns true if the queue is full, and false otherwise */
     boolean isFull();
+
+    /* returns the number of items in the queue */
+    int size();
+
+    /*
+     * returns an iterator over the items in the queue, from front to
+     * rear, that leaves the queue unchanged. The iterator doesn't
+     * support remove.
+     */
+    Iterator<T> iterator();
+
+    /*
+     * adds the specified items, in order, to the rear of the queue,
+     * stopping if the queue becomes full. Returns the number of items
+     * added.
+     */
+    default int insertAll(Iterable<? extends T> items) {
+        int count = 0;
+        for (T item : items) {
+            if (!insert(item)) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
 }